@@ -0,0 +1,142 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counts words approximately in a fixed amount of memory, for input
+ * streams that have too many distinct words for an exact WordCountMap.
+ *
+ * A CountMinSketch estimates the count of every word and a SpaceSaving
+ * table tracks the heavyHitterCapacity most frequent candidates. Both only
+ * ever overestimate, so the reported count of a word is the smaller of the
+ * two. After N words:
+ * - every word with a true count above N / heavyHitterCapacity is in the
+ *   top list, and
+ * - a reported count exceeds the true count by at most the smaller of
+ *   N / heavyHitterCapacity and, with probability at least 1 - e^-depth,
+ *   (e / sketch width) * N.
+ *
+ * Memory use is the sketch (4 bytes per counter) plus about 100 bytes and
+ * the word itself per heavy-hitter entry, independent of the input size.
+ * @author: Yitong Chen
+ */
+public class ApproximateWordCounter {
+    private final CountMinSketch sketch;
+    private final SpaceSaving heavyHitters;
+
+    /**
+     * Constructs an empty counter.
+     * @param sketchBytes the memory for the Count-Min Sketch counters
+     * @param sketchDepth the number of sketch rows
+     * @param heavyHitterCapacity the number of candidate top words to track;
+     *        should be well above the number of words wanted in the cloud
+     */
+    public ApproximateWordCounter(long sketchBytes, int sketchDepth, int heavyHitterCapacity) {
+        sketch = CountMinSketch.withMemory(sketchBytes, sketchDepth);
+        heavyHitters = new SpaceSaving(heavyHitterCapacity);
+    }
+
+    /**
+     * Adds 1 to the count of word. Adding an empty string is ignored.
+     */
+    public void incrementCount(String word) {
+        if (word.length() > 0) {
+            sketch.add(word);
+            heavyHitters.add(word);
+        }
+    }
+
+    /**
+     * Returns the estimated count of word, which is never below the true count
+     */
+    public int getCount(String word) {
+        int estimate = sketch.estimate(word);
+        long heavyHitterCount = heavyHitters.getCount(word);
+        if (heavyHitterCount > 0) {
+            estimate = (int) Math.min(estimate, heavyHitterCount);
+        }
+        return estimate;
+    }
+
+    /**
+     * Returns the total number of words counted
+     */
+    public long getTotal() {
+        return sketch.getTotal();
+    }
+
+    /**
+     * Returns the most a reported count can exceed the true count (with
+     * the sketch's probability)
+     */
+    public double errorBound() {
+        return Math.min(heavyHitters.errorBound(), sketch.errorBound());
+    }
+
+    /**
+     * Returns the numWords words with the largest estimated counts, sorted
+     * in decreasing order by count with ties broken by word
+     */
+    public List<WordCount> getWordCountsByCount(int numWords) {
+        WordCount[] candidates = new WordCount[heavyHitters.size()];
+        for (int i = 0; i < candidates.length; i++) {
+            String word = heavyHitters.getWord(i);
+            candidates[i] = new WordCount(word, getCount(word));
+        }
+        return new ArrayList<WordCount>(Arrays.asList(Quicksort.topN(candidates, numWords)));
+    }
+
+    /**
+     * Compares the approximate top words with the exact ones from a
+     * WordCountMap on a seeded Zipf corpus and prints the overlap and the
+     * largest count error next to the documented bound
+     */
+    public static void main(String[] args) {
+        int numTokens = 2000000;
+        int numWords = 200;
+        CorpusGenerator generator = new CorpusGenerator(200000, 1.0, "english", 0,
+                                                        new ArrayList<String>(), 42);
+        WordCountMap exact = new WordCountMap();
+        ApproximateWordCounter approximate = new ApproximateWordCounter(1 << 20, 4, 2000);
+        for (int i = 0; i < numTokens; i++) {
+            String word = generator.nextWord();
+            exact.incrementCount(word);
+            approximate.incrementCount(word);
+        }
+
+        List<WordCount> exactTop = exact.getWordCountsByCount(numWords);
+        List<WordCount> approximateTop = approximate.getWordCountsByCount(numWords);
+        Map<String, Integer> exactCounts = new HashMap<String, Integer>();
+        Set<String> exactWords = new HashSet<String>();
+        for (WordCount wordCount : exactTop) {
+            exactWords.add(wordCount.getWord());
+        }
+        int overlap = 0;
+        int maxError = 0;
+        boolean neverUnder = true;
+        for (WordCount wordCount : approximateTop) {
+            int trueCount = exact.getCount(wordCount.getWord());
+            exactCounts.put(wordCount.getWord(), trueCount);
+            if (exactWords.contains(wordCount.getWord())) {
+                overlap++;
+            }
+            maxError = Math.max(maxError, wordCount.getCount() - trueCount);
+            neverUnder = neverUnder && wordCount.getCount() >= trueCount;
+        }
+        System.out.println("Counted " + numTokens + " tokens, " + exact.size() + " distinct words");
+        System.out.println("Top " + numWords + " words in common with the exact trie: " + overlap);
+        System.out.println("Largest overestimate in the approximate top list: " + maxError
+                           + " (bound " + approximate.errorBound() + ")");
+        System.out.println("No count is below the true count: " + neverUnder);
+        System.out.println("Approximate top 5:");
+        for (int i = 0; i < 5; i++) {
+            WordCount wordCount = approximateTop.get(i);
+            System.out.println("  " + wordCount.getWord() + ": " + wordCount.getCount()
+                               + " (exact " + exactCounts.get(wordCount.getWord()) + ")");
+        }
+    }
+}
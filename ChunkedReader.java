@@ -0,0 +1,125 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file as a number of chunks of about the same size that can be
+ * read in any order. The chunk boundaries are moved to whitespace: a chunk
+ * holds the tokens that start in its byte range, including the end of its
+ * last token, so every token is in exactly one chunk.
+ *
+ * The file is read as UTF-8 and only ASCII whitespace separates chunks.
+ * @author: Yitong Chen
+ */
+public class ChunkedReader {
+    // the number of bytes read at a time past the end of a chunk
+    private static final int EXTEND_SIZE = 256;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int chunkSize;
+
+    /**
+     * Opens the file to be read in chunks of chunkSize bytes
+     */
+    public ChunkedReader(File file, int chunkSize) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.size = channel.size();
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the number of chunks
+     */
+    public int getNumChunks() {
+        return (int) ((size + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * Returns the size of the file in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes of the file in the byte range of the chunk
+     */
+    public long getChunkBytes(int chunk) {
+        long start = (long) chunk * chunkSize;
+        return Math.min(size, start + chunkSize) - start;
+    }
+
+    /**
+     * Reads the text of the tokens that start in the byte range of the chunk
+     */
+    public String readChunk(int chunk) throws IOException {
+        long start = (long) chunk * chunkSize;
+        long end = Math.min(size, start + chunkSize);
+        // read from one byte before the range to see if the range starts
+        // in the middle of a token
+        long from = Math.max(start - 1, 0);
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - from) + EXTEND_SIZE);
+        read(buffer, from, end);
+        // finish the last token, which may go past the end of the range
+        while (buffer.position() > 0 && !isWhitespace(buffer.get(buffer.position() - 1))
+               && from + buffer.position() < size) {
+            if (buffer.remaining() < EXTEND_SIZE) {
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+            long position = from + buffer.position();
+            int before = buffer.position();
+            read(buffer, position, Math.min(size, position + EXTEND_SIZE));
+            // keep only the bytes up to and including the first whitespace
+            for (int i = before; i < buffer.position(); i++) {
+                if (isWhitespace(buffer.get(i))) {
+                    buffer.position(i + 1);
+                    break;
+                }
+            }
+        }
+
+        byte[] bytes = buffer.array();
+        int length = buffer.position();
+        int begin = 0;
+        if (start > 0) {
+            // skip the end of a token that started in the previous chunk
+            while (begin < length && !isWhitespace(bytes[begin])) {
+                begin++;
+            }
+        }
+        return new String(bytes, begin, length - begin, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the bytes from position up to end into the buffer
+     */
+    private void read(ByteBuffer buffer, long position, long end) throws IOException {
+        buffer.limit(buffer.position() + (int) (end - position));
+        while (position < end) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        buffer.limit(buffer.capacity());
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b >= 0 && Character.isWhitespace((char) b);
+    }
+
+    /**
+     * Closes the file
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,278 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.Set;
+
+/**
+ * This class generates repeatable synthetic text for sizing and benchmarking
+ * the word counter. Word ranks follow a Zipf distribution with a configurable
+ * exponent over a vocabulary of a configurable size, and a configurable
+ * fraction of the tokens are decorated with the kinds of punctuation that
+ * WordCounter.format has to strip: leading and trailing marks, runs of
+ * marks, tokens made only of marks, capitals and inner apostrophes.
+ * The same seed always produces the same text.
+ *
+ * Usage: java CorpusGenerator <outputFile> [--size=100m] [--vocab=100000]
+ *            [--zipf=1.0] [--lengths=english] [--punctuation=0.1] [--seed=42]
+ *
+ * @author: Yitong Chen
+ */
+public class CorpusGenerator {
+    private static final String[] LEADING = {"(", "\"", "'", "[", "--", "\"("};
+    private static final String[] TRAILING = {".", ",", ";", ":", "!", "?", ")", "\"", "...", "?!", ".\"", "),"};
+    private static final String[] PUNCTUATION_ONLY = {"-", "--", "...", "*", "&", "\"", "!?"};
+
+    private final Random random;
+    // the words of the vocabulary, most frequent first
+    private final String[] vocabulary;
+    // cumulative Zipf weights of the vocabulary ranks
+    private final double[] cumulative;
+    // the fraction of tokens that get punctuation
+    private final double punctuationRate;
+
+    /**
+     * Constructs a generator.
+     * @param vocabularySize the number of distinct words
+     * @param zipfExponent the exponent s of the rank frequency 1 / rank^s
+     * @param lengthDistribution "short", "english" or "long", see wordLength
+     * @param punctuationRate the fraction of tokens decorated with punctuation
+     * @param stopWords words to use for the most frequent ranks, may be empty
+     * @param seed the random seed
+     */
+    public CorpusGenerator(int vocabularySize, double zipfExponent, String lengthDistribution,
+                           double punctuationRate, List<String> stopWords, long seed) {
+        this.random = new Random(seed);
+        this.punctuationRate = punctuationRate;
+        this.vocabulary = vocabulary(vocabularySize, lengthDistribution, stopWords, random);
+        this.cumulative = new double[vocabularySize];
+        double total = 0;
+        for (int rank = 0; rank < vocabularySize; rank++) {
+            total += 1.0 / Math.pow(rank + 1, zipfExponent);
+            cumulative[rank] = total;
+        }
+    }
+
+    /**
+     * Returns a random word length from the named distribution:
+     * "short" is 1 to 4 letters, "long" is 8 to 20 letters and "english"
+     * roughly follows the lengths of English words (mostly 2 to 8 letters).
+     */
+    static int wordLength(String distribution, Random random) {
+        if (distribution.equals("short")) {
+            return 1 + random.nextInt(4);
+        } else if (distribution.equals("long")) {
+            return 8 + random.nextInt(13);
+        } else if (distribution.equals("english")) {
+            // approximate frequencies of English word lengths 1 to 12
+            int[] weights = {3, 17, 20, 16, 11, 9, 8, 6, 4, 3, 2, 1};
+            int pick = random.nextInt(100);
+            for (int length = 0; length < weights.length; length++) {
+                pick -= weights[length];
+                if (pick < 0) {
+                    return length + 1;
+                }
+            }
+            return weights.length;
+        }
+        throw new IllegalArgumentException("Unknown word length distribution: " + distribution);
+    }
+
+    /**
+     * Creates a vocabulary of distinct lowercase words, starting with the
+     * given stop words and followed by random words of the requested lengths
+     */
+    private static String[] vocabulary(int vocabularySize, String lengthDistribution,
+                                       List<String> stopWords, Random random) {
+        String[] result = new String[vocabularySize];
+        Set<String> seen = new HashSet<String>();
+        int numWords = 0;
+        for (String stopWord : stopWords) {
+            if (numWords < vocabularySize && seen.add(stopWord)) {
+                result[numWords] = stopWord;
+                numWords++;
+            }
+        }
+        while (numWords < vocabularySize) {
+            char[] word = new char[wordLength(lengthDistribution, random)];
+            for (int i = 0; i < word.length; i++) {
+                word[i] = (char) ('a' + random.nextInt(26));
+            }
+            String newWord = new String(word);
+            if (seen.add(newWord)) {
+                result[numWords] = newWord;
+                numWords++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the next vocabulary word, drawn by Zipf rank
+     */
+    public String nextWord() {
+        double total = cumulative[cumulative.length - 1];
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+        if (rank < 0) {
+            rank = -rank - 1;
+        }
+        return vocabulary[Math.min(rank, vocabulary.length - 1)];
+    }
+
+    /**
+     * Returns the next token: a vocabulary word, possibly decorated with
+     * punctuation and capitals, or sometimes a token of punctuation only
+     */
+    public String nextToken() {
+        String word = nextWord();
+        if (random.nextDouble() >= punctuationRate) {
+            return word;
+        }
+        switch (random.nextInt(8)) {
+            case 0:
+                return LEADING[random.nextInt(LEADING.length)] + word;
+            case 1:
+                return LEADING[random.nextInt(LEADING.length)] + word
+                       + TRAILING[random.nextInt(TRAILING.length)];
+            case 2:
+                return PUNCTUATION_ONLY[random.nextInt(PUNCTUATION_ONLY.length)];
+            case 3:
+                // capitalized, as at the start of a sentence
+                return Character.toUpperCase(word.charAt(0)) + word.substring(1)
+                       + TRAILING[random.nextInt(TRAILING.length)];
+            case 4:
+                // possessive or contraction: the apostrophe must survive
+                return word + "'s";
+            default:
+                return word + TRAILING[random.nextInt(TRAILING.length)];
+        }
+    }
+
+    /**
+     * Returns numTokens words of a seeded Zipf stream with exponent 1 over
+     * a vocabulary of the given size, without punctuation or stop words
+     */
+    static String[] words(int vocabularySize, String lengthDistribution, int numTokens, long seed) {
+        CorpusGenerator generator = new CorpusGenerator(vocabularySize, 1.0, lengthDistribution, 0,
+                                                        new ArrayList<String>(), seed);
+        String[] result = new String[numTokens];
+        for (int i = 0; i < numTokens; i++) {
+            result[i] = generator.nextWord();
+        }
+        return result;
+    }
+
+    /**
+     * Returns numTokens lowercase tokens of the same kind of stream with
+     * punctuation attached to 30% of them, as WordCounter.format sees them
+     */
+    static String[] punctuatedTokens(int vocabularySize, String lengthDistribution, int numTokens, long seed) {
+        CorpusGenerator generator = new CorpusGenerator(vocabularySize, 1.0, lengthDistribution, 0.3,
+                                                        new ArrayList<String>(), seed);
+        String[] result = new String[numTokens];
+        for (int i = 0; i < numTokens; i++) {
+            result[i] = generator.nextToken().toLowerCase();
+        }
+        return result;
+    }
+
+    /**
+     * Writes whitespace separated tokens to out until at least numBytes
+     * characters have been written, with line breaks every few tokens.
+     * @return the number of tokens written
+     */
+    public long write(Writer out, long numBytes) throws IOException {
+        long written = 0;
+        long numTokens = 0;
+        int tokensOnLine = 0;
+        int lineLength = 8 + random.nextInt(8);
+        while (written < numBytes) {
+            String token = nextToken();
+            out.write(token);
+            numTokens++;
+            tokensOnLine++;
+            if (tokensOnLine == lineLength) {
+                out.write('\n');
+                tokensOnLine = 0;
+                lineLength = 8 + random.nextInt(8);
+            } else {
+                out.write(' ');
+            }
+            written += token.length() + 1;
+        }
+        return numTokens;
+    }
+
+    /**
+     * Reads the stop words from the given file, or returns an empty list
+     * if the file cannot be found
+     */
+    static List<String> readStopWords(String fileName) {
+        List<String> stopWords = new ArrayList<String>();
+        try {
+            Scanner scanner = new Scanner(new File(fileName));
+            while (scanner.hasNext()) {
+                stopWords.add(scanner.next());
+            }
+            scanner.close();
+        } catch (FileNotFoundException e) {
+            System.out.println("No stop word file " + fileName + ", using random words only");
+        }
+        return stopWords;
+    }
+
+    /**
+     * Reads the output file name and options from the command line
+     * and writes the corpus
+     */
+    public static void main(String[] args) throws IOException {
+        String usage = "Usage: java CorpusGenerator <outputFile> [--size=100m] [--vocab=100000]"
+                       + " [--zipf=1.0] [--lengths=english] [--punctuation=0.1] [--seed=42]";
+        String outputFileName = null;
+        long size = 100L << 20;
+        int vocabularySize = 100000;
+        double zipfExponent = 1.0;
+        String lengthDistribution = "english";
+        double punctuationRate = 0.1;
+        long seed = 42;
+        for (String arg : args) {
+            if (arg.startsWith("--size=")) {
+                size = WordCounter.parseSize(arg.substring("--size=".length()));
+            } else if (arg.startsWith("--vocab=")) {
+                vocabularySize = Integer.parseInt(arg.substring("--vocab=".length()));
+            } else if (arg.startsWith("--zipf=")) {
+                zipfExponent = Double.parseDouble(arg.substring("--zipf=".length()));
+            } else if (arg.startsWith("--lengths=")) {
+                lengthDistribution = arg.substring("--lengths=".length());
+            } else if (arg.startsWith("--punctuation=")) {
+                punctuationRate = Double.parseDouble(arg.substring("--punctuation=".length()));
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else {
+                outputFileName = arg;
+            }
+        }
+        if (outputFileName == null) {
+            System.out.println(usage);
+            return;
+        }
+
+        CorpusGenerator generator = new CorpusGenerator(vocabularySize, zipfExponent, lengthDistribution,
+                                                        punctuationRate, readStopWords("StopWords.txt"), seed);
+        long start = System.nanoTime();
+        Writer out = new BufferedWriter(new FileWriter(outputFileName), 1 << 16);
+        long numTokens = generator.write(out, size);
+        out.close();
+        System.out.println("Wrote " + numTokens + " tokens (" + new File(outputFileName).length()
+                           + " bytes) to " + outputFileName
+                           + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * A Count-Min Sketch: a fixed-size table of counters that estimates how
+ * often each word was added, using the same memory however many distinct
+ * words there are.
+ *
+ * With width w and depth d, after N words have been added the estimate for
+ * a word is never below its true count, and with probability at least
+ * 1 - e^-d it is at most the true count plus (e / w) * N.
+ * @author: Yitong Chen
+ */
+public class CountMinSketch {
+    // depth rows of width counters each, row after row
+    private final int[] table;
+    private final int width;
+    private final int depth;
+    // the total number of words added
+    private long total;
+
+    /**
+     * Constructs an empty sketch with depth rows of width counters
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width < 1 || depth < 1) {
+            throw new IllegalArgumentException("width and depth must be positive");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.table = new int[width * depth];
+        this.total = 0;
+    }
+
+    /**
+     * Constructs an empty sketch of the given depth that uses about the 
+     * given number of bytes
+     */
+    public static CountMinSketch withMemory(long bytes, int depth) {
+        long width = Math.max(1, bytes / (4L * depth));
+        return new CountMinSketch((int) Math.min(width, Integer.MAX_VALUE / depth), depth);
+    }
+
+    /**
+     * Adds 1 to the count of word
+     * @return the new estimated count of word
+     */
+    public int add(String word) {
+        long hash = hash(word);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * width + bucket(hash1 + row * hash2);
+            if (table[index] < Integer.MAX_VALUE) {
+                table[index]++;
+            }
+            estimate = Math.min(estimate, table[index]);
+        }
+        total++;
+        return estimate;
+    }
+
+    /**
+     * Returns the estimated count of word: at least its true count
+     */
+    public int estimate(String word) {
+        long hash = hash(word);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, table[row * width + bucket(hash1 + row * hash2)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Returns the largest amount by which an estimate exceeds the true count
+     * with probability at least 1 - e^-depth, (e / width) * total
+     */
+    public double errorBound() {
+        return Math.E / width * total;
+    }
+
+    /** Returns the total number of words added */
+    public long getTotal() {
+        return total;
+    }
+
+    /** Returns the number of bytes used by the counters */
+    public long getBytes() {
+        return 4L * table.length;
+    }
+
+    /**
+     * Maps a row hash to a column
+     */
+    private int bucket(int rowHash) {
+        return (int) ((rowHash & 0xFFFFFFFFL) % width);
+    }
+
+    /**
+     * Returns a 64-bit hash of the word (FNV-1a followed by a final mix),
+     * whose two halves are combined into the hash of each row
+     */
+    private static long hash(String word) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < word.length(); i++) {
+            hash ^= word.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        // an even second half would only reach every other column
+        return hash | (1L << 32);
+    }
+}
@@ -0,0 +1,470 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Counts words exactly with a memory budget, for inputs with more distinct
+ * words than fit in the heap.
+ *
+ * Words are counted in a WordCountMap. Whenever its estimated size goes over
+ * the budget, the map is written to a run file of (word, count) pairs in
+ * alphabetical order and cleared. The ranking is then made by a k-way merge
+ * of the runs, which adds up the counts of a word found in several runs, so
+ * the number of distinct words is limited by the disk instead of the heap.
+ * While no run has been written everything stays in memory.
+ *
+ * Each run being merged is read through a buffer, and half the budget is
+ * set aside for those buffers and the buffer of the run being written. The
+ * buffer size and the number of runs merged at once (the fan-in) are chosen
+ * to fit in it; when there are more runs than the fan-in, groups of them are
+ * first merged into longer runs, so the buffers and the open files stay
+ * bounded however many runs there are.
+ *
+ * A run file starts with the number of entries, followed by each entry as
+ * its count, its length and its characters.
+ * @author: Yitong Chen
+ */
+public class ExternalWordCounter {
+    // estimated heap bytes per entry of a ranking chunk besides its
+    // characters: the offset, count and order ints of a WordCountTable row
+    private static final int TABLE_ROW_BYTES = 12;
+    // the smallest and largest buffer a run is read or written through
+    private static final int MIN_BUFFER_SIZE = 1 << 13;
+    private static final int MAX_BUFFER_SIZE = 1 << 16;
+    // the fan-in the buffer size is chosen for, when the budget allows it
+    private static final int TARGET_FAN_IN = 16;
+    // the most runs open at once, to stay well under the file limit
+    private static final int MAX_FAN_IN = 128;
+
+    // the largest estimated size of the in-memory map, in bytes
+    private final long memoryBudget;
+    // the directory the run files are written to
+    private final File directory;
+    // the size of the buffer each run is read or written through
+    private final int bufferSize;
+    // the most runs merged at once
+    private final int fanIn;
+    private final WordCountMap wordCountMap;
+    // the run files written so far, each in alphabetical order
+    private final List<File> runs;
+    // the node count of the map the last time its size was checked
+    private int checkedNodeCount;
+
+    /**
+     * Constructs an empty counter.
+     * @param memoryBudget the largest estimated size of the in-memory map,
+     *        in bytes, before it is written to a run
+     * @param directory the directory for the run files, or null for the
+     *        default temporary directory
+     */
+    public ExternalWordCounter(long memoryBudget, File directory) {
+        this.memoryBudget = memoryBudget;
+        this.directory = directory;
+        // fanIn read buffers and one write buffer in half the budget, but
+        // at least a 2-way merge through the smallest buffers
+        long mergeBudget = memoryBudget / 2;
+        bufferSize = (int) Math.max(MIN_BUFFER_SIZE, Math.min(MAX_BUFFER_SIZE, mergeBudget / (TARGET_FAN_IN + 1)));
+        fanIn = (int) Math.max(2, Math.min(MAX_FAN_IN, mergeBudget / bufferSize - 1));
+        wordCountMap = new WordCountMap();
+        runs = new ArrayList<File>();
+        checkedNodeCount = wordCountMap.getNodeCount();
+    }
+
+    /**
+     * Adds 1 to the count of word, writing the map to a run first if it
+     * has grown over the memory budget. Adding an empty string is ignored.
+     */
+    public void incrementCount(String word) throws IOException {
+        wordCountMap.incrementCount(word);
+        // the map only grows when nodes are added
+        if (wordCountMap.getNodeCount() != checkedNodeCount) {
+            checkedNodeCount = wordCountMap.getNodeCount();
+            if (wordCountMap.getEstimatedBytes() > memoryBudget) {
+                spill();
+            }
+        }
+    }
+
+    /**
+     * Writes the words in memory to a new run file and clears the map
+     */
+    public void spill() throws IOException {
+        if (wordCountMap.size() == 0) {
+            return;
+        }
+        WordCountTable table = wordCountMap.getWordCountTableByWord();
+        wordCountMap.clear();
+        checkedNodeCount = wordCountMap.getNodeCount();
+        runs.add(writeRun(table));
+    }
+
+    /**
+     * Returns the number of run files written so far
+     */
+    public int getNumRuns() {
+        return runs.size();
+    }
+
+    /**
+     * Returns the most runs that are merged at once
+     */
+    public int getFanIn() {
+        return fanIn;
+    }
+
+    /**
+     * Returns the number of trie nodes created while counting
+     */
+    public long getNodesCreated() {
+        return wordCountMap.getNodesCreated();
+    }
+
+    /**
+     * Returns the numWords words with the largest counts, sorted in
+     * decreasing order by count with ties broken by word. Only numWords
+     * words are held in memory while the runs are merged.
+     */
+    public List<WordCount> getWordCountsByCount(int numWords) throws IOException {
+        if (runs.isEmpty()) {
+            return wordCountMap.getWordCountsByCount(numWords);
+        }
+        spill();
+        reduceRuns(runs, WORD_ORDER);
+        // the worst ranked of the best words so far is at the head
+        PriorityQueue<WordCount> best = new PriorityQueue<WordCount>(11, Collections.reverseOrder(Quicksort.RANK_ORDER));
+        RunMerger merger = new RunMerger(runs, WORD_ORDER, bufferSize);
+        try {
+            while (merger.next() && numWords > 0) {
+                if (best.size() < numWords) {
+                    best.add(new WordCount(merger.word, merger.count));
+                } else if (merger.count > best.peek().getCount()) {
+                    // words arrive in alphabetical order, so a word with the
+                    // same count as the head can never rank above it
+                    best.poll();
+                    best.add(new WordCount(merger.word, merger.count));
+                }
+            }
+        } finally {
+            merger.close();
+        }
+        WordCount[] result = best.toArray(new WordCount[best.size()]);
+        Quicksort.rankSort(result);
+        List<WordCount> list = new ArrayList<WordCount>(result.length);
+        Collections.addAll(list, result);
+        return list;
+    }
+
+    /**
+     * Prints every word and its count as "word:count", in decreasing order
+     * by count with ties broken by word.
+     *
+     * The merged runs are cut into chunks that fit in the part of the memory
+     * budget not taken by the merge buffers, each chunk is ranked and
+     * written to a run of its own, and those runs are merged by rank.
+     * @return the number of distinct words printed
+     */
+    public int printWordCountsByCount(PrintStream out) throws IOException {
+        if (runs.isEmpty()) {
+            WordCountTable table = wordCountMap.getWordCountTable();
+            printTable(table, out);
+            return table.size();
+        }
+        spill();
+        reduceRuns(runs, WORD_ORDER);
+        // the readers of the runs and the writer of the ranked chunks are
+        // open while a chunk is filled
+        long chunkBudget = Math.max(memoryBudget - (long) (runs.size() + 1) * bufferSize, memoryBudget / 2);
+        List<File> rankedRuns = new ArrayList<File>();
+        int numWords = 0;
+        try {
+            RunMerger merger = new RunMerger(runs, WORD_ORDER, bufferSize);
+            try {
+                WordCountTable chunk = new WordCountTable();
+                long chunkBytes = 0;
+                while (merger.next()) {
+                    // added in alphabetical order, so ranking the chunk
+                    // stably breaks ties by word
+                    chunk.add(merger.word, merger.count);
+                    chunkBytes += 2L * merger.word.length() + TABLE_ROW_BYTES;
+                    numWords++;
+                    if (chunkBytes > chunkBudget) {
+                        chunk.sortByCount();
+                        rankedRuns.add(writeRun(chunk));
+                        chunk = new WordCountTable();
+                        chunkBytes = 0;
+                    }
+                }
+                chunk.sortByCount();
+                if (rankedRuns.isEmpty()) {
+                    printTable(chunk, out);
+                    return numWords;
+                }
+                rankedRuns.add(writeRun(chunk));
+            } finally {
+                merger.close();
+            }
+
+            reduceRuns(rankedRuns, RANK_ORDER);
+            RunMerger rankMerger = new RunMerger(rankedRuns, RANK_ORDER, bufferSize);
+            try {
+                StringBuilder line = new StringBuilder();
+                while (rankMerger.next()) {
+                    line.setLength(0);
+                    line.append(rankMerger.word).append(':').append(rankMerger.count);
+                    out.println(line);
+                }
+            } finally {
+                rankMerger.close();
+            }
+            return numWords;
+        } finally {
+            deleteAll(rankedRuns);
+        }
+    }
+
+    /**
+     * Deletes the run files and clears the words in memory
+     */
+    public void close() {
+        deleteAll(runs);
+        runs.clear();
+        wordCountMap.clear();
+    }
+
+    /**
+     * Prints the rows of the table as "word:count" in rank order
+     */
+    private static void printTable(WordCountTable table, PrintStream out) {
+        StringBuilder line = new StringBuilder();
+        for (int rank = 0; rank < table.size(); rank++) {
+            line.setLength(0);
+            table.appendWord(rank, line);
+            line.append(':').append(table.getCount(rank));
+            out.println(line);
+        }
+    }
+
+    /**
+     * Writes the rows of the table in rank order to a new run file
+     */
+    private File writeRun(WordCountTable table) throws IOException {
+        RunWriter writer = new RunWriter(newRunFile(), bufferSize);
+        try {
+            StringBuilder word = new StringBuilder();
+            for (int rank = 0; rank < table.size(); rank++) {
+                word.setLength(0);
+                table.appendWord(rank, word);
+                writer.write(word, table.getCount(rank));
+            }
+        } finally {
+            writer.close();
+        }
+        return writer.run;
+    }
+
+    /**
+     * Merges the first fanIn runs into a new run at the end of the list
+     * until no more than fanIn runs are left. The merged runs are deleted.
+     */
+    private void reduceRuns(List<File> files, Comparator<RunReader> order) throws IOException {
+        while (files.size() > fanIn) {
+            List<File> group = files.subList(0, fanIn);
+            RunMerger merger = new RunMerger(group, order, bufferSize);
+            RunWriter writer = null;
+            try {
+                writer = new RunWriter(newRunFile(), bufferSize);
+                while (merger.next()) {
+                    writer.write(merger.word, merger.count);
+                }
+            } finally {
+                merger.close();
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+            deleteAll(group);
+            group.clear();
+            files.add(writer.run);
+        }
+    }
+
+    private File newRunFile() throws IOException {
+        File run = File.createTempFile("wordcount", ".run", directory);
+        run.deleteOnExit();
+        return run;
+    }
+
+    private static void deleteAll(List<File> files) {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /** Orders run readers by their current word */
+    private static final Comparator<RunReader> WORD_ORDER = new Comparator<RunReader>() {
+        public int compare(RunReader a, RunReader b) {
+            return a.word.compareTo(b.word);
+        }
+    };
+
+    /** Orders run readers by the rank of their current word */
+    private static final Comparator<RunReader> RANK_ORDER = new Comparator<RunReader>() {
+        public int compare(RunReader a, RunReader b) {
+            if (a.count != b.count) {
+                return a.count > b.count ? -1 : 1;
+            }
+            return a.word.compareTo(b.word);
+        }
+    };
+
+    /**
+     * Reads the entries of a run file one at a time
+     */
+    private static class RunReader {
+        private final DataInputStream in;
+        // the number of entries not read yet
+        private int remaining;
+        // the current entry
+        private String word;
+        private int count;
+
+        private RunReader(File run, int bufferSize) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), bufferSize));
+            remaining = in.readInt();
+        }
+
+        /**
+         * Reads the next entry
+         * @return false if there are no more entries
+         */
+        private boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            count = in.readInt();
+            char[] chars = new char[in.readInt()];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = in.readChar();
+            }
+            word = new String(chars);
+            return true;
+        }
+    }
+
+    /**
+     * Writes entries to a run file. The number of entries at its start is
+     * filled in when it is closed.
+     */
+    private static class RunWriter {
+        private final File run;
+        private final DataOutputStream out;
+        private int size;
+
+        private RunWriter(File run, int bufferSize) throws IOException {
+            this.run = run;
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), bufferSize));
+            // a placeholder for the number of entries
+            out.writeInt(0);
+        }
+
+        private void write(CharSequence word, int count) throws IOException {
+            out.writeInt(count);
+            out.writeInt(word.length());
+            for (int i = 0; i < word.length(); i++) {
+                out.writeChar(word.charAt(i));
+            }
+            size++;
+        }
+
+        private void close() throws IOException {
+            out.close();
+            RandomAccessFile file = new RandomAccessFile(run, "rw");
+            try {
+                file.writeInt(size);
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Merges runs that are sorted in the same order. When the runs are
+     * merged in alphabetical order, the counts of a word found in several
+     * runs are added up.
+     */
+    private static class RunMerger {
+        private final PriorityQueue<RunReader> queue;
+        private final List<RunReader> readers;
+        private final boolean combine;
+        // the current merged entry
+        private String word;
+        private int count;
+
+        private RunMerger(List<File> runs, Comparator<RunReader> order, int bufferSize) throws IOException {
+            queue = new PriorityQueue<RunReader>(Math.max(runs.size(), 1), order);
+            readers = new ArrayList<RunReader>();
+            combine = order == WORD_ORDER;
+            try {
+                for (File run : runs) {
+                    RunReader reader = new RunReader(run, bufferSize);
+                    readers.add(reader);
+                    if (reader.next()) {
+                        queue.add(reader);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * Moves to the next merged entry
+         * @return false if all the runs have been merged
+         */
+        private boolean next() throws IOException {
+            if (queue.isEmpty()) {
+                return false;
+            }
+            RunReader reader = queue.poll();
+            word = reader.word;
+            count = reader.count;
+            advance(reader);
+            while (combine && !queue.isEmpty() && queue.peek().word.equals(word)) {
+                reader = queue.poll();
+                count += reader.count;
+                advance(reader);
+            }
+            return true;
+        }
+
+        private void advance(RunReader reader) throws IOException {
+            if (reader.next()) {
+                queue.add(reader);
+            }
+        }
+
+        private void close() {
+            for (RunReader reader : readers) {
+                try {
+                    reader.in.close();
+                } catch (IOException e) {
+                    // nothing more to read from it
+                }
+            }
+        }
+    }
+}
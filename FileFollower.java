@@ -0,0 +1,323 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the non-stop words of a file that keeps growing, such as a log,
+ * reading only the bytes appended since the last read.
+ *
+ * The file is read with positional FileChannel reads from the offset of
+ * the last whole token, and a WatchService on its directory says when to
+ * read again. Two cases restart the reading at offset 0:
+ * - rotation, when the file key of the path changes: whatever was appended
+ *   to the old file is read to its end first, and
+ * - truncation, when the file becomes shorter than the offset.
+ * The counts carry on across both.
+ *
+ * The offset, the file key and a snapshot of the counts can be saved to a
+ * checkpoint file, so a restarted follower resumes where it stopped instead
+ * of counting the whole file again.
+ * @author: Yitong Chen
+ */
+public class FileFollower {
+    // identifies a checkpoint file and the version of its layout
+    private static final int CHECKPOINT_MAGIC = 0x57434b31;
+    private static final int READ_SIZE = 1 << 16;
+
+    private final Path path;
+    private final Set<String> stopWords;
+    private final WordCountMap wordCountMap;
+    // the open file, its file key, and the offset after the last whole token
+    private FileChannel channel;
+    private Object fileKey;
+    private long offset;
+    // the file key that was saved in the loaded checkpoint, as a string
+    private String checkpointFileKey;
+    private final ByteBuffer buffer;
+    // the number of tokens read and stop words dropped
+    private long tokensRead;
+    private long stopWordsDropped;
+
+    /**
+     * Constructs a follower that starts at the beginning of the file
+     * @param path the file to follow
+     * @param stopWords the words that are not counted
+     */
+    public FileFollower(Path path, Collection<String> stopWords) {
+        this.path = path;
+        this.stopWords = new HashSet<String>(stopWords);
+        wordCountMap = new WordCountMap();
+        buffer = ByteBuffer.allocate(READ_SIZE);
+        offset = 0;
+    }
+
+    /**
+     * Reads what has been appended to the file since the last read, and
+     * counts its whole tokens. A token at the end of the file is only
+     * counted once whitespace follows it or the file is rotated.
+     * @return the number of bytes read
+     */
+    public synchronized long poll() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            // between a rotation and the creation of the new file
+            return 0;
+        }
+        long bytesRead = 0;
+        if (channel == null) {
+            open(attributes);
+        } else if (attributes.fileKey() != null && !attributes.fileKey().equals(fileKey)) {
+            // rotated: finish the old file, ending its last token,
+            // and start the new one from the beginning
+            bytesRead += readAppended(true);
+            channel.close();
+            channel = null;
+            offset = 0;
+            open(attributes);
+        }
+        if (channel.size() < offset) {
+            // truncated in place
+            offset = 0;
+        }
+        bytesRead += readAppended(false);
+        return bytesRead;
+    }
+
+    /**
+     * Opens the file at the path. The saved offset of a checkpoint is only
+     * kept if the file is the one the checkpoint was made from and it has
+     * not become shorter.
+     */
+    private void open(BasicFileAttributes attributes) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        fileKey = attributes.fileKey();
+        if (checkpointFileKey != null) {
+            String currentFileKey = fileKey == null ? "" : fileKey.toString();
+            if (!checkpointFileKey.equals(currentFileKey) || channel.size() < offset) {
+                offset = 0;
+            }
+            checkpointFileKey = null;
+        }
+    }
+
+    /**
+     * Reads from the offset to the end of the file and counts the whole
+     * tokens, leaving the offset after the last whole token
+     * @param atEnd whether the last token ends at the end of the file
+     * @return the number of bytes read
+     */
+    private long readAppended(boolean atEnd) throws IOException {
+        long start = offset;
+        long position = offset;
+        // bytes of a token that are not yet known to be whole
+        byte[] pending = new byte[0];
+        buffer.clear();
+        int read;
+        while ((read = channel.read(buffer, position)) > 0) {
+            position += read;
+            buffer.flip();
+            byte[] bytes = new byte[pending.length + buffer.remaining()];
+            System.arraycopy(pending, 0, bytes, 0, pending.length);
+            buffer.get(bytes, pending.length, buffer.remaining());
+            buffer.clear();
+
+            // split after the last whitespace byte; UTF-8 never uses bytes
+            // below 0x80 inside a multi-byte character
+            int end = bytes.length;
+            while (end > 0 && !isWhitespace(bytes[end - 1])) {
+                end--;
+            }
+            count(new String(bytes, 0, end, StandardCharsets.UTF_8));
+            pending = Arrays.copyOfRange(bytes, end, bytes.length);
+            offset = position - pending.length;
+        }
+        if (atEnd && pending.length > 0) {
+            count(new String(pending, StandardCharsets.UTF_8));
+            offset = position;
+        }
+        return position - start;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b >= 0 && Character.isWhitespace((char) b);
+    }
+
+    /**
+     * Counts the whitespace separated non-stop words of the text
+     */
+    private void count(String text) {
+        int i = 0;
+        while (i < text.length()) {
+            while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < text.length() && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                String word = WordCounter.format(text.substring(start, i).toLowerCase());
+                tokensRead++;
+                if (stopWords.contains(word)) {
+                    stopWordsDropped++;
+                } else {
+                    wordCountMap.incrementCount(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the file to change and reads what was appended, returning
+     * after at most maxWait milliseconds even if nothing happened, since
+     * not every file system reports changes
+     * @return the number of bytes read
+     */
+    public long waitAndPoll(WatchService watcher, long maxWait) throws IOException, InterruptedException {
+        WatchKey key = watcher.poll(maxWait, TimeUnit.MILLISECONDS);
+        if (key != null) {
+            key.pollEvents();
+            key.reset();
+        }
+        return poll();
+    }
+
+    /**
+     * Returns a WatchService that watches the directory of the file for
+     * new and modified files
+     */
+    public WatchService watch() throws IOException {
+        WatchService watcher = FileSystems.getDefault().newWatchService();
+        Path directory = path.toAbsolutePath().getParent();
+        directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        return watcher;
+    }
+
+    /**
+     * Returns the counts of the words read so far
+     */
+    public WordCountMap getWordCountMap() {
+        return wordCountMap;
+    }
+
+    /**
+     * Returns the offset after the last whole token read from the file
+     */
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    public long getTokensRead() {
+        return tokensRead;
+    }
+
+    public long getStopWordsDropped() {
+        return stopWordsDropped;
+    }
+
+    /**
+     * Saves the file key, offset and counts to the checkpoint file. The
+     * checkpoint is written to a temporary file first and then moved over
+     * the old one, so a crash never leaves half a checkpoint.
+     */
+    public synchronized void saveCheckpoint(File checkpoint) throws IOException {
+        File temporary = new File(checkpoint.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16));
+        try {
+            out.writeInt(CHECKPOINT_MAGIC);
+            out.writeUTF(path.toAbsolutePath().toString());
+            out.writeUTF(fileKey == null ? "" : fileKey.toString());
+            out.writeLong(offset);
+            out.writeLong(tokensRead);
+            out.writeLong(stopWordsDropped);
+            WordCountTable table = wordCountMap.getWordCountTableByWord();
+            out.writeInt(table.size());
+            StringBuilder word = new StringBuilder();
+            for (int row = 0; row < table.size(); row++) {
+                word.setLength(0);
+                table.appendWord(row, word);
+                out.writeInt(table.getCount(row));
+                out.writeInt(word.length());
+                for (int i = 0; i < word.length(); i++) {
+                    out.writeChar(word.charAt(i));
+                }
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(temporary.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restores the offset and counts saved by saveCheckpoint, if the
+     * checkpoint exists and was made for the same path. Must be called
+     * before the first poll.
+     * @return true if the checkpoint was loaded
+     */
+    public synchronized boolean loadCheckpoint(File checkpoint) throws IOException {
+        if (!checkpoint.exists()) {
+            return false;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpoint), 1 << 16));
+        try {
+            if (in.readInt() != CHECKPOINT_MAGIC) {
+                throw new IOException(checkpoint + " is not a checkpoint");
+            }
+            if (!in.readUTF().equals(path.toAbsolutePath().toString())) {
+                return false;
+            }
+            checkpointFileKey = in.readUTF();
+            offset = in.readLong();
+            tokensRead = in.readLong();
+            stopWordsDropped = in.readLong();
+            int numWords = in.readInt();
+            for (int i = 0; i < numWords; i++) {
+                int count = in.readInt();
+                char[] chars = new char[in.readInt()];
+                for (int j = 0; j < chars.length; j++) {
+                    chars[j] = in.readChar();
+                }
+                wordCountMap.incrementCount(new String(chars), count);
+            }
+        } finally {
+            in.close();
+        }
+        return true;
+    }
+
+    /**
+     * Closes the file
+     */
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
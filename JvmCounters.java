@@ -0,0 +1,41 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Reads the JVM counters that the benchmark and harness classes report:
+ * the bytes allocated by the current thread and the number and time of
+ * garbage collections so far.
+ *
+ * @author: Yitong Chen
+ */
+public class JvmCounters {
+    /**
+     * Returns the number of bytes allocated so far by the current thread
+     */
+    public static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns the total number of garbage collections so far
+     */
+    public static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gc.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the total time in milliseconds spent in garbage collection so far
+     */
+    public static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(gc.getCollectionTime(), 0);
+        }
+        return time;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * This class counts keys made of two longs in an open-addressing hash
+ * table of primitive arrays, so no object is created per key. Collisions
+ * are resolved by linear probing. A slot with a count of 0 is empty; keys are
+ * never removed.
+ * @author: Yitong Chen
+ */
+public class LongPairCountMap {
+    // the table is grown when more than this fraction of the slots is used
+    private static final double MAX_LOAD = 0.6;
+
+    // the two halves of the key in the slot, if counts[slot] is above 0;
+    // the table length is a power of two
+    private long[] highs;
+    private long[] lows;
+    private int[] counts;
+    // the number of keys stored
+    private int size;
+
+    /**
+     * Constructs an empty LongPairCountMap
+     */
+    public LongPairCountMap() {
+        highs = new long[16];
+        lows = new long[16];
+        counts = new int[16];
+        size = 0;
+    }
+
+    /**
+     * Mixes the bits of the key (the finalizer of MurmurHash3), since the
+     * table only uses the low bits
+     */
+    private static int hash(long high, long low) {
+        long key = high * 0x9e3779b97f4a7c15L + low;
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * Returns the slot holding key, or the empty slot where it would be added
+     */
+    private int find(long high, long low) {
+        int mask = highs.length - 1;
+        int slot = hash(high, low) & mask;
+        while (counts[slot] > 0 && (highs[slot] != high || lows[slot] != low)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Adds 1 to the count of key, adding it with a count of 1 if it is new
+     */
+    public void incrementCount(long high, long low) {
+        int slot = find(high, low);
+        if (counts[slot] == 0) {
+            if (size + 1 > highs.length * MAX_LOAD) {
+                rehash(highs.length * 2);
+                slot = find(high, low);
+            }
+            highs[slot] = high;
+            lows[slot] = low;
+            size++;
+        }
+        counts[slot]++;
+    }
+
+    /**
+     * Returns the count of key, or 0 if it is not stored
+     */
+    public int getCount(long high, long low) {
+        return counts[find(high, low)];
+    }
+
+    /**
+     * Moves the keys into a table with the given number of slots
+     */
+    private void rehash(int capacity) {
+        long[] oldHighs = highs;
+        long[] oldLows = lows;
+        int[] oldCounts = counts;
+        highs = new long[capacity];
+        lows = new long[capacity];
+        counts = new int[capacity];
+        for (int i = 0; i < oldHighs.length; i++) {
+            if (oldCounts[i] > 0) {
+                int slot = find(oldHighs[i], oldLows[i]);
+                highs[slot] = oldHighs[i];
+                lows[slot] = oldLows[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of keys stored
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of slots; slots go from 0 to capacity() - 1
+     */
+    public int capacity() {
+        return highs.length;
+    }
+
+    /**
+     * Returns the high half of the key in the slot; only meaningful if
+     * slotCount is above 0
+     */
+    public long slotHigh(int slot) {
+        return highs[slot];
+    }
+
+    /**
+     * Returns the low half of the key in the slot; only meaningful if
+     * slotCount is above 0
+     */
+    public long slotLow(int slot) {
+        return lows[slot];
+    }
+
+    /**
+     * Returns the count in the slot, which is 0 if the slot is empty
+     */
+    public int slotCount(int slot) {
+        return counts[slot];
+    }
+
+    /**
+     * Returns an estimate of the number of bytes of heap retained
+     */
+    public long getEstimatedBytes() {
+        return 2 * (16 + 8L * highs.length) + 16 + 4L * counts.length;
+    }
+}
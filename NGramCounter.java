@@ -0,0 +1,300 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the n-grams (runs of n consecutive words) of a token stream, such
+ * as the bigram "machine learning", without building a String per n-gram.
+ *
+ * Each word is interned into an int ID, and an n-gram is counted as the IDs
+ * of its words packed 32 bits each into the two-long key of a
+ * LongPairCountMap, so any number of distinct words fits. A stop word or
+ * an empty token (one made only of punctuation) ends the current run of
+ * words, so no counted n-gram contains one. n-grams are only decoded back
+ * to text for the ones that are returned.
+ * @author: Yitong Chen
+ */
+public class NGramCounter {
+    // the number of words per n-gram
+    private final int n;
+    private final Map<String, Integer> ids;
+    // words.get(id) is the word with that ID
+    private final List<String> words;
+    private final LongPairCountMap counts;
+    // the IDs of the last words of the current run, oldest first
+    private final int[] window;
+    // the number of words in the window
+    private int windowSize;
+    // wordRanks[id] is the position of the word in alphabetical order,
+    // computed when the n-grams are ranked
+    private int[] wordRanks;
+
+    /**
+     * Constructs an empty counter of n-grams of n words, for n from 2 to 3
+     */
+    public NGramCounter(int n) {
+        if (n < 2 || n > 3) {
+            throw new IllegalArgumentException("n-grams must have 2 or 3 words, not " + n);
+        }
+        this.n = n;
+        ids = new HashMap<String, Integer>();
+        words = new ArrayList<String>();
+        counts = new LongPairCountMap();
+        window = new int[n];
+        windowSize = 0;
+    }
+
+    /**
+     * Adds the next word of the stream, counting the n-gram it ends
+     */
+    public void addWord(String word) {
+        if (word.length() == 0) {
+            endRun();
+            return;
+        }
+        if (windowSize == n) {
+            System.arraycopy(window, 1, window, 0, n - 1);
+            windowSize--;
+        }
+        window[windowSize] = intern(word);
+        windowSize++;
+        if (windowSize == n) {
+            counts.incrementCount(keyHigh(window), keyLow(window));
+        }
+    }
+
+    /**
+     * Ends the current run of words, for a stop word or the end of a
+     * sentence, so that no n-gram spans it
+     */
+    public void endRun() {
+        windowSize = 0;
+    }
+
+    /**
+     * Returns the ID of word, giving it a new one if it has none
+     */
+    private int intern(String word) {
+        Integer id = ids.get(word);
+        if (id == null) {
+            id = words.size();
+            ids.put(word, id);
+            words.add(word);
+            wordRanks = null;
+        }
+        return id;
+    }
+
+    /**
+     * Returns the high half of the key of the n-gram with the given word
+     * IDs: the first two IDs
+     */
+    private static long keyHigh(int[] wordIds) {
+        return ((long) wordIds[0] << 32) | wordIds[1];
+    }
+
+    /**
+     * Returns the low half of the key of the n-gram with the given word
+     * IDs: the third ID, or 0 for bigrams
+     */
+    private long keyLow(int[] wordIds) {
+        return n == 3 ? wordIds[2] : 0;
+    }
+
+    /**
+     * Returns the ID of word i of the n-gram in the slot
+     */
+    private int wordId(int slot, int i) {
+        if (i == 2) {
+            return (int) counts.slotLow(slot);
+        }
+        long high = counts.slotHigh(slot);
+        return (int) (i == 0 ? high >>> 32 : high);
+    }
+
+    /**
+     * Returns the number of distinct n-grams counted
+     */
+    public int size() {
+        return counts.size();
+    }
+
+    /**
+     * Returns the number of distinct words seen
+     */
+    public int getNumWords() {
+        return words.size();
+    }
+
+    /**
+     * Returns the count of the n-gram made of the given words separated by
+     * single spaces, or 0 if it was not counted
+     */
+    public int getCount(String phrase) {
+        String[] parts = phrase.split(" ");
+        if (parts.length != n) {
+            return 0;
+        }
+        int[] wordIds = new int[n];
+        for (int i = 0; i < n; i++) {
+            Integer id = ids.get(parts[i]);
+            if (id == null) {
+                return 0;
+            }
+            wordIds[i] = id;
+        }
+        return counts.getCount(keyHigh(wordIds), keyLow(wordIds));
+    }
+
+    /**
+     * Returns an estimate of the number of bytes of heap retained by the
+     * n-gram table, not counting the word dictionary
+     */
+    public long getEstimatedBytes() {
+        return counts.getEstimatedBytes();
+    }
+
+    /**
+     * Returns the numWords n-grams with the largest counts, with their words
+     * separated by single spaces, sorted in decreasing order by count with
+     * ties broken by the text of the n-gram. Only those n-grams are decoded.
+     */
+    public List<WordCount> getWordCountsByCount(int numWords) {
+        computeWordRanks();
+        int[] slots = topSlots(Math.max(numWords, 0));
+        List<WordCount> result = new ArrayList<WordCount>(slots.length);
+        for (int slot : slots) {
+            result.add(new WordCount(decode(slot), counts.slotCount(slot)));
+        }
+        return result;
+    }
+
+    /**
+     * Returns all the n-grams, ranked as getWordCountsByCount(int)
+     */
+    public List<WordCount> getWordCountsByCount() {
+        return getWordCountsByCount(counts.size());
+    }
+
+    /**
+     * Ranks the words alphabetically, so that comparing the word ranks of
+     * two n-grams one word at a time orders them like their text (as long
+     * as no word contains characters below the space)
+     */
+    private void computeWordRanks() {
+        if (wordRanks != null) {
+            return;
+        }
+        WordCount[] sorted = new WordCount[words.size()];
+        for (int id = 0; id < sorted.length; id++) {
+            // the count holds the ID while sorting
+            sorted[id] = new WordCount(words.get(id), id);
+        }
+        Arrays.sort(sorted, new Comparator<WordCount>() {
+            public int compare(WordCount a, WordCount b) {
+                return a.getWord().compareTo(b.getWord());
+            }
+        });
+        wordRanks = new int[sorted.length];
+        for (int rank = 0; rank < sorted.length; rank++) {
+            wordRanks[sorted[rank].getCount()] = rank;
+        }
+    }
+
+    /**
+     * Returns the slots of the numWords highest ranked n-grams in rank
+     * order, found with a bounded heap whose root is the lowest ranked one
+     */
+    private int[] topSlots(int numWords) {
+        int[] heap = new int[Math.min(numWords, counts.size())];
+        int heapSize = 0;
+        for (int slot = 0; slot < counts.capacity() && heap.length > 0; slot++) {
+            if (counts.slotCount(slot) == 0) {
+                continue;
+            }
+            if (heapSize < heap.length) {
+                // sift up
+                int i = heapSize;
+                heapSize++;
+                while (i > 0 && compare(slot, heap[(i - 1) / 2]) > 0) {
+                    heap[i] = heap[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+                heap[i] = slot;
+            } else if (compare(slot, heap[0]) < 0) {
+                siftDown(heap, slot, heapSize);
+            }
+        }
+        // take the lowest ranked out of the heap one at a time
+        int[] result = new int[heapSize];
+        while (heapSize > 0) {
+            heapSize--;
+            result[heapSize] = heap[0];
+            siftDown(heap, heap[heapSize], heapSize);
+        }
+        return result;
+    }
+
+    /**
+     * Puts slot at the root of the heap of the given size and sifts it
+     * down to its place
+     */
+    private void siftDown(int[] heap, int slot, int heapSize) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && compare(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (compare(heap[child], slot) <= 0) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (heapSize > 0) {
+            heap[i] = slot;
+        }
+    }
+
+    /**
+     * Compares the n-grams in two slots in rank order: negative if the
+     * first has the larger count, or the same count and comes first
+     * alphabetically
+     */
+    private int compare(int slotA, int slotB) {
+        int countA = counts.slotCount(slotA);
+        int countB = counts.slotCount(slotB);
+        if (countA != countB) {
+            return countA > countB ? -1 : 1;
+        }
+        for (int i = 0; i < n; i++) {
+            int rankA = wordRanks[wordId(slotA, i)];
+            int rankB = wordRanks[wordId(slotB, i)];
+            if (rankA != rankB) {
+                return rankA < rankB ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the text of the n-gram in the slot
+     */
+    private String decode(int slot) {
+        StringBuilder phrase = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (phrase.length() > 0) {
+                phrase.append(' ');
+            }
+            phrase.append(words.get(wordId(slot, i)));
+        }
+        return phrase.toString();
+    }
+}
@@ -0,0 +1,195 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * This class collects the wall and CPU time of each phase of a WordCounter
+ * run (load, sort, render, ...) and the counters of the
+ * counting pipeline. Each phase is also emitted as a JFR event, and the
+ * counters as one more event when the run finishes.
+ *
+ * Instrumentation is off when the WordCounter has no PipelineStats, so a
+ * normal run only pays for a null check per phase.
+ * @author: Yitong Chen
+ */
+public class PipelineStats {
+    // the number of tokens read from the input
+    long tokensRead;
+    // the number of tokens dropped because they are stop words
+    long stopWordsDropped;
+    // the number of trie nodes created by the word count maps
+    long trieNodesCreated;
+    // the number of distinct non-stop words
+    long distinctWords;
+
+    // the names, wall times and CPU times of the finished phases
+    private final List<String> phaseNames;
+    private final List<Long> wallTimes;
+    private final List<Long> cpuTimes;
+    // the current phase, or null between phases
+    private String phase;
+    private long phaseWallStart;
+    private long phaseCpuStart;
+    private PhaseEvent phaseEvent;
+    private final ThreadMXBean threads;
+
+    /** Constructs an empty PipelineStats */
+    public PipelineStats() {
+        phaseNames = new ArrayList<String>();
+        wallTimes = new ArrayList<Long>();
+        cpuTimes = new ArrayList<Long>();
+        threads = ManagementFactory.getThreadMXBean();
+    }
+
+    /**
+     * Returns a new PipelineStats if statistics were asked for or a flight
+     * recording is running, and null otherwise
+     */
+    public static PipelineStats create(boolean requested) {
+        if (requested || FlightRecorder.isInitialized()) {
+            return new PipelineStats();
+        }
+        return null;
+    }
+
+    /**
+     * Starts timing a phase, ending the current one if there is one
+     */
+    public void startPhase(String name) {
+        if (phase != null) {
+            endPhase();
+        }
+        phase = name;
+        phaseEvent = new PhaseEvent();
+        phaseEvent.phase = name;
+        phaseEvent.begin();
+        phaseWallStart = System.nanoTime();
+        phaseCpuStart = cpuTime();
+    }
+
+    /**
+     * Ends the current phase and records its times
+     */
+    public void endPhase() {
+        if (phase == null) {
+            return;
+        }
+        long wallTime = System.nanoTime() - phaseWallStart;
+        long cpuTime = cpuTime() - phaseCpuStart;
+        phaseNames.add(phase);
+        wallTimes.add(wallTime);
+        cpuTimes.add(cpuTime);
+        phaseEvent.cpuTime = cpuTime;
+        phaseEvent.commit();
+        phase = null;
+        phaseEvent = null;
+    }
+
+    /**
+     * Ends the current phase and emits the counters as a JFR event
+     */
+    public void finish() {
+        endPhase();
+        CountersEvent event = new CountersEvent();
+        event.tokensRead = tokensRead;
+        event.stopWordsDropped = stopWordsDropped;
+        event.trieNodesCreated = trieNodesCreated;
+        event.distinctWords = distinctWords;
+        event.commit();
+    }
+
+    /**
+     * Returns the CPU time of the current thread in nanoseconds,
+     * or 0 if the JVM does not measure it
+     */
+    private long cpuTime() {
+        if (threads.isCurrentThreadCpuTimeSupported()) {
+            return threads.getCurrentThreadCpuTime();
+        }
+        return 0;
+    }
+
+    /**
+     * Returns a human readable summary of the phases and counters
+     */
+    public String summary() {
+        StringBuilder result = new StringBuilder();
+        long totalWall = 0;
+        long totalCpu = 0;
+        for (int i = 0; i < phaseNames.size(); i++) {
+            result.append(String.format("%-12s %10.1f ms wall %10.1f ms cpu%n", phaseNames.get(i),
+                                        wallTimes.get(i) / 1e6, cpuTimes.get(i) / 1e6));
+            totalWall += wallTimes.get(i);
+            totalCpu += cpuTimes.get(i);
+        }
+        result.append(String.format("%-12s %10.1f ms wall %10.1f ms cpu%n", "total", totalWall / 1e6, totalCpu / 1e6));
+        result.append("tokens read:        " + tokensRead + "\n");
+        result.append("stop words dropped: " + stopWordsDropped + "\n");
+        result.append("trie nodes created: " + trieNodesCreated + "\n");
+        result.append("distinct words:     " + distinctWords + "\n");
+        return result.toString();
+    }
+
+    /**
+     * Returns the phases and counters as a JSON object
+     */
+    public String toJson() {
+        StringBuilder result = new StringBuilder("{\"phases\":[");
+        for (int i = 0; i < phaseNames.size(); i++) {
+            if (i > 0) {
+                result.append(',');
+            }
+            result.append("{\"name\":\"").append(phaseNames.get(i))
+                  .append("\",\"wallNanos\":").append(wallTimes.get(i))
+                  .append(",\"cpuNanos\":").append(cpuTimes.get(i)).append('}');
+        }
+        result.append("],\"tokensRead\":").append(tokensRead)
+              .append(",\"stopWordsDropped\":").append(stopWordsDropped)
+              .append(",\"trieNodesCreated\":").append(trieNodesCreated)
+              .append(",\"distinctWords\":").append(distinctWords).append('}');
+        return result.toString();
+    }
+
+    /** JFR event for one phase of a WordCounter run; its duration is the wall time */
+    @Name("wordcloud.Phase")
+    @Label("Word Counter Phase")
+    @Category("Word Cloud")
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("CPU Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long cpuTime;
+    }
+
+    /** JFR event with the counters of a finished WordCounter run */
+    @Name("wordcloud.Counters")
+    @Label("Word Counter Counters")
+    @Category("Word Cloud")
+    @StackTrace(false)
+    static class CountersEvent extends Event {
+        @Label("Tokens Read")
+        long tokensRead;
+
+        @Label("Stop Words Dropped")
+        long stopWordsDropped;
+
+        @Label("Trie Nodes Created")
+        long trieNodesCreated;
+
+        @Label("Distinct Words")
+        @Description("Distinct non-stop words")
+        long distinctWords;
+    }
+}
@@ -1,3 +1,9 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * Class for sorting the WordCount objects efficiently.
  * 
@@ -7,6 +13,31 @@
 public class Quicksort {
     // initialize a basic MIN_SIZE
     public static int MIN_SIZE = 10;
+    // parts smaller than this are sorted sequentially by parallelQuicksort
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+    // largest count for which rankSort uses a counting sort;
+    // larger counts are sorted with an LSD radix sort instead
+    private static final int COUNTING_SORT_MAX = 1 << 16;
+    // the first n entries are found with topN instead of a full sort
+    // when n is less than the number of entries divided by this
+    private static final int TOP_N_RATIO = 8;
+
+    /** Orders WordCounts by decreasing count, then by increasing word */
+    public static final Comparator<WordCount> RANK_ORDER = new Comparator<WordCount>() {
+        public int compare(WordCount x, WordCount y) {
+            if (x.getCount() != y.getCount()) {
+                return x.getCount() > y.getCount() ? -1 : 1;
+            }
+            return x.getWord().compareTo(y.getWord());
+        }
+    };
+
+    /** Orders WordCounts by increasing word */
+    private static final Comparator<WordCount> WORD_ORDER = new Comparator<WordCount>() {
+        public int compare(WordCount x, WordCount y) {
+            return x.getWord().compareTo(y.getWord());
+        }
+    };
 
     /** 
      * Sorts an array in decreasing order using quicksort.
@@ -17,21 +48,102 @@ public class Quicksort {
         quicksort(array, 0, array.length - 1);
     }
     
+    /**
+     * Sorts an array in decreasing order using quicksort, sorting the two
+     * parts of each partition in parallel in the common fork-join pool.
+     * Produces the same order by count as quicksort.
+     * array will be sorted in place.
+     */
+    public static void parallelQuicksort(WordCount[] array) {
+        parallelQuicksort(array, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Sorts an array in decreasing order using quicksort, sorting the two
+     * parts of each partition in parallel in the given fork-join pool.
+     * array will be sorted in place.
+     */
+    public static void parallelQuicksort(WordCount[] array, ForkJoinPool pool) {
+        pool.invoke(new QuicksortTask(array, 0, array.length - 1, depthLimit(array.length)));
+    }
+    
+    /**
+     * Fork-join task that sorts the part of an array between index first
+     * and index last in decreasing order. Parts above PARALLEL_THRESHOLD are
+     * partitioned and both sides are sorted as parallel subtasks; smaller
+     * parts are handed to the sequential quicksort.
+     */
+    private static class QuicksortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final WordCount[] a;
+        private final int first;
+        private final int last;
+        private final int depthLimit;
+        
+        private QuicksortTask(WordCount[] a, int first, int last, int depthLimit) {
+            this.a = a;
+            this.first = first;
+            this.last = last;
+            this.depthLimit = depthLimit;
+        }
+        
+        protected void compute() {
+            if (last - first + 1 < PARALLEL_THRESHOLD || depthLimit == 0) {
+                quicksort(a, first, last, depthLimit);
+            } else {
+                int[] equalRange = partition(a, first, last);
+                invokeAll(new QuicksortTask(a, first, equalRange[0] - 1, depthLimit - 1),
+                          new QuicksortTask(a, equalRange[1] + 1, last, depthLimit - 1));
+            }
+        }
+    }
+    
     /** 
      * Helper method:
      * Sorts the part of the array a between index first and index last
      *  in decreasing order using quicksort.
      */
     private static void quicksort(WordCount[] a, int first, int last) {
-        if (last - first + 1 < MIN_SIZE) {
-            insertionSort(a, first, last);
-        } else {
-            // create the partition: Smaller | Pivot | Larger
-            int pivotIndex = partition (a, first, last);
-            // sort subarrays Smaller and Larger
-            quicksort(a, first, pivotIndex - 1);
-            quicksort(a, pivotIndex + 1, last);
+        quicksort(a, first, last, depthLimit(last - first + 1));
+    }
+    
+    /**
+     * Returns the number of partitioning levels allowed for n entries
+     * before falling back to heap sort, 2 * log2(n) as in introsort.
+     */
+    private static int depthLimit(int n) {
+        return 2 * (32 - Integer.numberOfLeadingZeros(n));
+    }
+    
+    /** 
+     * Helper method:
+     * Sorts the part of the array a between index first and index last
+     * in decreasing order using quicksort. Only the smaller part of each
+     * partition is sorted recursively and the larger part is sorted by the 
+     * loop, so the recursion depth stays logarithmic. After depthLimit
+     * levels of partitioning the rest is heap sorted.
+     */
+    private static void quicksort(WordCount[] a, int first, int last, int depthLimit) {
+        while (last - first + 1 >= MIN_SIZE) {
+            if (depthLimit == 0) {
+                heapSort(a, first, last);
+                return;
+            }
+            depthLimit--;
+            // create the partition: Larger | Equal | Smaller
+            int[] equalRange = partition(a, first, last);
+            // the equal part is already in place; sort the smaller
+            // of Larger and Smaller recursively and loop on the other
+            if (equalRange[0] - first < last - equalRange[1]) {
+                quicksort(a, first, equalRange[0] - 1, depthLimit);
+                first = equalRange[1] + 1;
+            } else {
+                quicksort(a, equalRange[1] + 1, last, depthLimit);
+                last = equalRange[0] - 1;
+            }
         }
+        insertionSort(a, first, last);
     }
     
     /** 
@@ -74,57 +186,73 @@ public class Quicksort {
     
     /**
      * Partitions the array a so that the entries in [first, last]
-     * are rearranged into a "smaller" part and a larger part.
-     * The return value is the location of the pivot - all the entries
-     * located to the left of that index are greater than the value at the
-     * pivot index, and all the entries to the right of that index are
-     * less than the pivot.
+     * are rearranged into a larger part, an equal part and a smaller part
+     * around a median-of-three pivot count (Dutch national flag partitioning).
+     * Entries equal to the pivot are gathered in the middle, so long runs 
+     * of equal counts are finished in a single pass.
+     * @return the first and last index of the equal part - all the entries
+     * located to the left of it are greater than the pivot, and all the 
+     * entries to the right of it are less than the pivot.
      */
-    private static int partition (WordCount[] a, int first, int last) {
+    private static int[] partition (WordCount[] a, int first, int last) {
         int mid = (first + last) / 2;
         sortFirstMiddleLast (a, first, mid, last);
-        // Assertion: The pivot is a[mid]; a[first] >= pivot and
-        // a[last] <= pivot, so do not compare these two array entries
-        // with pivot.
-        // move pivot to next-to-last position in array
-        swap(a, mid, last - 1);
-        int pivotIndex = last - 1;
-        WordCount pivot = a[pivotIndex];
-        // determine subarrays Smaller = a[first..endSmaller]
-        // and Larger = a[endSmaller+1..last-1]
-        // such that entries in Smaller are >= pivot and
-        // entries in Larger are <= pivot; initially, these subarrays are empty
-        int indexFromLeft = first + 1;
-        int indexFromRight = last - 2;
-        boolean done = false;
-        while (!done) {
-            // starting at beginning of array, leave entries that are > pivot;
-            // locate first entry that is <= pivot; you will find one,
-            // since last entry is <= pivot
-            while (a[indexFromLeft].getCount() > pivot.getCount()) {
-                indexFromLeft++;
-            }
-            // starting at end of array, leave entries that are < pivot;
-            // locate first entry that is >= pivot; you will find one,
-            // since first entry is >= pivot
-            while (a[indexFromRight].getCount() < pivot.getCount()) {
-                indexFromRight--;
-            }
-
-            if (indexFromLeft < indexFromRight) {
-                swap(a, indexFromLeft, indexFromRight);
-                indexFromLeft++;
-                indexFromRight--;
+        int pivot = a[mid].getCount();
+        // a[first..endLarger-1] > pivot, a[endLarger..index-1] == pivot,
+        // a[index..startSmaller] is unexamined, a[startSmaller+1..last] < pivot
+        int endLarger = first;
+        int index = first;
+        int startSmaller = last;
+        while (index <= startSmaller) {
+            int count = a[index].getCount();
+            if (count > pivot) {
+                swap(a, endLarger, index);
+                endLarger++;
+                index++;
+            } else if (count < pivot) {
+                swap(a, index, startSmaller);
+                startSmaller--;
             } else {
-                done = true;
+                index++;
             }
-        } 
-
-
-        // place pivot between Smaller and Larger subarrays
-        swap (a, pivotIndex, indexFromLeft);
-        pivotIndex = indexFromLeft;
-        return pivotIndex;
+        }
+        return new int[] {endLarger, startSmaller};
+    }
+    
+    /**
+     * Sorts the part of the array a between index first and index last
+     * in decreasing order using heap sort. Used by quicksort when the 
+     * partitions keep coming out unbalanced.
+     */
+    private static void heapSort(WordCount[] a, int first, int last) {
+        int size = last - first + 1;
+        // build a heap with the smallest count at a[first]
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(a, first, i, size);
+        }
+        // repeatedly move the smallest remaining count to the end
+        for (int end = size - 1; end > 0; end--) {
+            swap(a, first, first + end);
+            siftDown(a, first, 0, end);
+        }
+    }
+    
+    /**
+     * Restores the min-heap property for the heap of the given size
+     * stored from a[first], starting at heap position i.
+     */
+    private static void siftDown(WordCount[] a, int first, int i, int size) {
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && a[first + child + 1].getCount() < a[first + child].getCount()) {
+                child++;
+            }
+            if (a[first + i].getCount() <= a[first + child].getCount()) {
+                return;
+            }
+            swap(a, first + i, first + child);
+            i = child;
+        }
     }
 
     
@@ -151,4 +279,417 @@ public class Quicksort {
             }
         }
     }
+    
+    /**
+     * Sorts an array in decreasing order by count, breaking ties by word
+     * in increasing order. 
+     * array will be sorted in place.
+     */
+    public static void rankSort(WordCount[] array) {
+        countSort(array);
+        breakTiesByWord(array);
+    }
+    
+    /**
+     * Sorts an array in decreasing order by count without comparing
+     * entries: the counts are bucketed with a counting sort when the largest
+     * count is small, and with an LSD radix sort on the count otherwise.
+     * The sort is stable, so entries with equal counts keep their order;
+     * an array that is already in order by word comes out in rankSort order.
+     * array will be sorted in place.
+     */
+    public static void countSort(WordCount[] array) {
+        if (array.length < MIN_SIZE) {
+            // insertion sort only moves an entry past strictly smaller counts
+            insertionSort(array, 0, array.length - 1);
+            return;
+        }
+        int minCount = Integer.MAX_VALUE;
+        int maxCount = Integer.MIN_VALUE;
+        for (WordCount wordCount : array) {
+            minCount = Math.min(minCount, wordCount.getCount());
+            maxCount = Math.max(maxCount, wordCount.getCount());
+        }
+        
+        WordCount[] buffer = new WordCount[array.length];
+        if (minCount >= 0 && maxCount <= COUNTING_SORT_MAX) {
+            countingSort(array, buffer, maxCount);
+        } else {
+            radixSort(array, buffer);
+        }
+    }
+    
+    /**
+     * Stable counting sort of array into decreasing order by count.
+     * All counts must be between 0 and maxCount.
+     * @param buffer scratch space of the same length as array
+     */
+    private static void countingSort(WordCount[] array, WordCount[] buffer, int maxCount) {
+        int[] start = new int[maxCount + 2];
+        for (WordCount wordCount : array) {
+            // bucket 0 holds the largest count
+            start[maxCount - wordCount.getCount() + 1]++;
+        }
+        for (int i = 1; i < start.length; i++) {
+            start[i] += start[i - 1];
+        }
+        for (WordCount wordCount : array) {
+            buffer[start[maxCount - wordCount.getCount()]++] = wordCount;
+        }
+        System.arraycopy(buffer, 0, array, 0, array.length);
+    }
+    
+    /**
+     * Stable LSD radix sort of array into decreasing order by count,
+     * one byte of the count per pass. Passes in which every entry falls
+     * into the same bucket are skipped.
+     * @param buffer scratch space of the same length as array
+     */
+    private static void radixSort(WordCount[] array, WordCount[] buffer) {
+        WordCount[] from = array;
+        WordCount[] to = buffer;
+        int[] start = new int[257];
+        for (int shift = 0; shift < 32; shift += 8) {
+            Arrays.fill(start, 0);
+            for (WordCount wordCount : from) {
+                start[radixDigit(wordCount.getCount(), shift) + 1]++;
+            }
+            boolean skip = false;
+            for (int i = 1; i < start.length; i++) {
+                if (start[i] == from.length) {
+                    skip = true;
+                }
+                start[i] += start[i - 1];
+            }
+            if (!skip) {
+                for (WordCount wordCount : from) {
+                    to[start[radixDigit(wordCount.getCount(), shift)]++] = wordCount;
+                }
+                WordCount[] temp = from;
+                from = to;
+                to = temp;
+            }
+        }
+        if (from != array) {
+            System.arraycopy(from, 0, array, 0, array.length);
+        }
+    }
+    
+    /**
+     * Returns one byte of the radix sort key of a count. The key is the count
+     * with its sign bit flipped and then inverted, so that sorting keys in
+     * increasing unsigned order sorts counts in decreasing order.
+     */
+    private static int radixDigit(int count, int shift) {
+        int key = ~(count ^ Integer.MIN_VALUE);
+        return (key >>> shift) & 0xFF;
+    }
+    
+    /**
+     * Sorts each run of entries with equal counts by word, given an array
+     * that is already in decreasing order by count.
+     */
+    private static void breakTiesByWord(WordCount[] array) {
+        int runStart = 0;
+        for (int i = 1; i <= array.length; i++) {
+            if (i == array.length || array[i].getCount() != array[runStart].getCount()) {
+                if (i - runStart > 1) {
+                    Arrays.sort(array, runStart, i, WORD_ORDER);
+                }
+                runStart = i;
+            }
+        }
+    }
+    
+    /**
+     * Returns the permutation that sorts the first size entries of counts
+     * into decreasing order: order[0] is the index of the largest count.
+     * The sort is stable, so equal counts keep their index order. Uses the
+     * same counting and radix sorts as countSort, but only moves indices.
+     */
+    public static int[] countOrder(int[] counts, int size) {
+        int[] order = new int[size];
+        if (size == 0) {
+            return order;
+        }
+        int minCount = Integer.MAX_VALUE;
+        int maxCount = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            minCount = Math.min(minCount, counts[i]);
+            maxCount = Math.max(maxCount, counts[i]);
+        }
+        
+        if (minCount >= 0 && maxCount <= COUNTING_SORT_MAX) {
+            int[] start = new int[maxCount + 2];
+            for (int i = 0; i < size; i++) {
+                start[maxCount - counts[i] + 1]++;
+            }
+            for (int i = 1; i < start.length; i++) {
+                start[i] += start[i - 1];
+            }
+            for (int i = 0; i < size; i++) {
+                order[start[maxCount - counts[i]]++] = i;
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            int[] from = order;
+            int[] to = new int[size];
+            int[] start = new int[257];
+            for (int shift = 0; shift < 32; shift += 8) {
+                Arrays.fill(start, 0);
+                for (int index : from) {
+                    start[radixDigit(counts[index], shift) + 1]++;
+                }
+                boolean skip = false;
+                for (int i = 1; i < start.length; i++) {
+                    if (start[i] == size) {
+                        skip = true;
+                    }
+                    start[i] += start[i - 1];
+                }
+                if (!skip) {
+                    for (int index : from) {
+                        to[start[radixDigit(counts[index], shift)]++] = index;
+                    }
+                    int[] temp = from;
+                    from = to;
+                    to = temp;
+                }
+            }
+            order = from;
+        }
+        return order;
+    }
+    
+    /**
+     * Returns true if the first n of size entries in rankSort order are
+     * better found with topN than by sorting all of them
+     */
+    public static boolean prefersTopN(int n, int size) {
+        return (long) n * TOP_N_RATIO < size;
+    }
+
+    /**
+     * Returns the n entries of a with the largest counts, in rankSort order
+     * (decreasing count, ties broken by increasing word), without sorting
+     * the whole array. The n largest counts are isolated in expected linear
+     * time by quickselect with partition, then only those n entries are 
+     * sorted. Entries tied with the n-th count are chosen by word, so the 
+     * result is always the first n entries of the rankSort order.
+     * a will be reordered.
+     */
+    public static WordCount[] topN(WordCount[] a, int n) {
+        if (n >= a.length) {
+            WordCount[] result = a.clone();
+            rankSort(result);
+            return result;
+        }
+        if (n <= 0) {
+            return new WordCount[0];
+        }
+        
+        // quickselect: afterwards a[0..n-1] >= a[n-1] >= a[n..]
+        int first = 0;
+        int last = a.length - 1;
+        boolean done = false;
+        while (!done) {
+            if (last - first + 1 < MIN_SIZE) {
+                insertionSort(a, first, last);
+                done = true;
+            } else {
+                int[] equalRange = partition(a, first, last);
+                if (n - 1 < equalRange[0]) {
+                    last = equalRange[0] - 1;
+                } else if (n - 1 > equalRange[1]) {
+                    first = equalRange[1] + 1;
+                } else {
+                    done = true;
+                }
+            }
+        }
+        
+        // gather every entry tied with the n-th count into a[bandStart..bandEnd-1]
+        // and keep the ones with the smallest words in front
+        int boundary = a[n - 1].getCount();
+        int bandStart = n;
+        for (int i = n - 1; i >= 0; i--) {
+            if (a[i].getCount() == boundary) {
+                swap(a, i, --bandStart);
+            }
+        }
+        int bandEnd = n;
+        for (int i = n; i < a.length; i++) {
+            if (a[i].getCount() == boundary) {
+                swap(a, i, bandEnd++);
+            }
+        }
+        if (bandEnd > n) {
+            Arrays.sort(a, bandStart, bandEnd, WORD_ORDER);
+        }
+        
+        WordCount[] result = Arrays.copyOf(a, n);
+        rankSort(result);
+        return result;
+    }
+    
+    /**
+     * Creates an array of WordCounts whose counts follow a Zipf distribution
+     * with the given exponent, in random order.
+     * @param numWords the number of distinct words
+     * @param topCount the count of the most frequent word
+     */
+    static WordCount[] zipfWordCounts(int numWords, int topCount, double exponent, long seed) {
+        Random random = new Random(seed);
+        WordCount[] result = new WordCount[numWords];
+        for (int rank = 1; rank <= numWords; rank++) {
+            int count = (int) Math.max(1, Math.round(topCount / Math.pow(rank, exponent)));
+            result[rank - 1] = new WordCount("w" + Integer.toString(random.nextInt(), 36), count);
+        }
+        for (int k = result.length; k > 1; k--) {
+            swap(result, k - 1, random.nextInt(k));
+        }
+        return result;
+    }
+    
+    /**
+     * Creates an array of WordCounts in which the given fraction of the
+     * entries have count 1 and the rest have Zipf-distributed counts,
+     * in random order.
+     */
+    static WordCount[] duplicateHeavyWordCounts(int size, double fractionOfOnes, long seed) {
+        Random random = new Random(seed);
+        WordCount[] result = new WordCount[size];
+        // the words do not affect the sort, so a few of them are shared
+        String[] words = {"the", "cloud", "word", "count", "tree"};
+        for (int i = 0; i < size; i++) {
+            int count = 1;
+            if (random.nextDouble() >= fractionOfOnes) {
+                count = 1 + 1000 / (1 + random.nextInt(1000));
+            }
+            result[i] = new WordCount(words[i % words.length], count);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the next number of cores to benchmark after the given one:
+     * the next power of two, then maxCores itself, then a number above it.
+     */
+    private static int nextCoreCount(int cores, int maxCores) {
+        if (cores < maxCores && cores * 2 > maxCores) {
+            return maxCores;
+        }
+        return cores * 2;
+    }
+    
+    /**
+     * Times quicksort against countSort and rankSort on Zipf-distributed
+     * counts and checks that all of them produce the same order by count.
+     * With the argument "duplicates", times quicksort on an array dominated
+     * by a single repeated count instead. With the argument "parallel",
+     * reports the speedup of parallelQuicksort for 1, 2, 4, ... cores.
+     * With the argument "topN", times topN against a full rankSort.
+     */
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("duplicates")) {
+            // 10M entries where 60% of the counts are 1
+            WordCount[] input = duplicateHeavyWordCounts(10000000, 0.6, 42);
+            for (int run = 0; run < 3; run++) {
+                WordCount[] a = input.clone();
+                long start = System.nanoTime();
+                quicksort(a);
+                System.out.println("n=" + a.length + " with 60% ones, quicksort: "
+                                   + (System.nanoTime() - start) / 1000000.0 + " ms");
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("parallel")) {
+            // speedup of parallelQuicksort over quicksort by number of cores
+            WordCount[] input = zipfWordCounts(5000000, 10000000, 1.0, 42);
+            WordCount[] expected = input.clone();
+            long start = System.nanoTime();
+            quicksort(expected);
+            long sequentialTime = System.nanoTime() - start;
+            System.out.println("n=" + input.length + " quicksort: " 
+                               + sequentialTime / 1000000.0 + " ms");
+            int maxCores = Runtime.getRuntime().availableProcessors();
+            for (int cores = 1; cores <= maxCores; cores = nextCoreCount(cores, maxCores)) {
+                ForkJoinPool pool = new ForkJoinPool(cores);
+                long bestTime = Long.MAX_VALUE;
+                boolean sameOrder = true;
+                for (int run = 0; run < 3; run++) {
+                    WordCount[] a = input.clone();
+                    start = System.nanoTime();
+                    parallelQuicksort(a, pool);
+                    bestTime = Math.min(bestTime, System.nanoTime() - start);
+                    for (int i = 0; i < a.length; i++) {
+                        sameOrder = sameOrder && a[i].getCount() == expected[i].getCount();
+                    }
+                }
+                pool.shutdown();
+                System.out.println("cores=" + cores + " parallelQuicksort: " + bestTime / 1000000.0 
+                                   + " ms speedup: " + (double) sequentialTime / bestTime
+                                   + " same order by count: " + sameOrder);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("topN")) {
+            // topN against a full rankSort for a cloud-sized n
+            WordCount[] input = zipfWordCounts(1000000, 1000000, 1.0, 42);
+            for (int n : new int[] {10, 100, 1000}) {
+                WordCount[] a = input.clone();
+                long start = System.nanoTime();
+                WordCount[] top = topN(a, n);
+                long topNTime = System.nanoTime() - start;
+                WordCount[] b = input.clone();
+                start = System.nanoTime();
+                rankSort(b);
+                long rankSortTime = System.nanoTime() - start;
+                boolean samePrefix = true;
+                for (int i = 0; i < n; i++) {
+                    samePrefix = samePrefix && top[i] == b[i];
+                }
+                System.out.println("n=" + n + " of " + input.length + " topN: " + topNTime / 1000000.0
+                                   + " ms rankSort: " + rankSortTime / 1000000.0 
+                                   + " ms same words: " + samePrefix);
+            }
+            return;
+        }
+        int[] sizes = {10000, 100000, 1000000};
+        int[] topCounts = {1000, 10000000};
+        for (int size : sizes) {
+            for (int topCount : topCounts) {
+                WordCount[] input = zipfWordCounts(size, topCount, 1.0, 42);
+                long quicksortTime = Long.MAX_VALUE;
+                long countSortTime = Long.MAX_VALUE;
+                long rankSortTime = Long.MAX_VALUE;
+                boolean sameOrder = true;
+                for (int run = 0; run < 5; run++) {
+                    WordCount[] a = input.clone();
+                    WordCount[] b = input.clone();
+                    WordCount[] c = input.clone();
+                    long start = System.nanoTime();
+                    quicksort(a);
+                    quicksortTime = Math.min(quicksortTime, System.nanoTime() - start);
+                    start = System.nanoTime();
+                    countSort(b);
+                    countSortTime = Math.min(countSortTime, System.nanoTime() - start);
+                    start = System.nanoTime();
+                    rankSort(c);
+                    rankSortTime = Math.min(rankSortTime, System.nanoTime() - start);
+                    for (int i = 0; i < a.length; i++) {
+                        sameOrder = sameOrder && a[i].getCount() == b[i].getCount()
+                                    && a[i].getCount() == c[i].getCount();
+                    }
+                }
+                System.out.println("n=" + size + " topCount=" + topCount
+                                   + " quicksort: " + quicksortTime / 1000000.0 + " ms"
+                                   + " countSort: " + countSortTime / 1000000.0 + " ms"
+                                   + " rankSort: " + rankSortTime / 1000000.0 + " ms"
+                                   + " same order by count: " + sameOrder);
+            }
+        }
+    }
 }
@@ -0,0 +1,433 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Checks the counting hot path for regressions on fixed seeded corpora and
+ * exits with status 1 if any check fails:
+ * - the bytes allocated per token by WordCounter.format and by
+ *   incrementCount of both WordCountStore backends, measured with the
+ *   thread allocation counter, and the estimated bytes per distinct word
+ *   of both backends, must not exceed the recorded baselines by more than
+ *   TOLERANCE (plus SLACK_BYTES), nor the absolute LIMITS: counting a
+ *   word that is already stored must not allocate, and format may only
+ *   allocate the trimmed copy of a token with punctuation;
+ * - every way of ranking the words (both backends, lists and tables, full
+ *   and top-N, patched WordCountMap snapshots, the sorts in Quicksort,
+ *   ExternalWordCounter with spilling and SlidingWindowCounter) must give
+ *   exactly the same result as a plain HashMap and Collections.sort, and
+ *   the word cloud of a table must be the same as that of its list.
+ * The time per token is printed too, but is only checked against its
+ * baseline with --check-time, since it depends on the machine.
+ *
+ * Usage: java RegressionCheck [--record] [--check-time] [--baselines=file]
+ * where --record writes the current measurements as the new baselines.
+ *
+ * @author: Yitong Chen
+ */
+public class RegressionCheck {
+    // a measurement may exceed its baseline by this fraction
+    private static final double TOLERANCE = 0.10;
+    // a time may exceed its baseline by this fraction with --check-time
+    private static final double TIME_TOLERANCE = 0.50;
+    // and bytes may exceed it by this many more, for baselines near 0
+    private static final double SLACK_BYTES = 4;
+    // absolute limits on the measurements whose names start with
+    // LIMIT_NAMES[i], whatever the baselines say
+    private static final String[] LIMIT_NAMES = {"alloc.WordCountMap.incrementExisting.",
+                                                 "alloc.WordCountHashMap.incrementExisting.",
+                                                 "alloc.WordCounter.format."};
+    private static final double[] LIMITS = {1, 1, 24};
+    private static final int NUM_TOKENS = 200000;
+    private static final int WARMUP_ROUNDS = 5;
+
+    // the measurements, by name
+    private final Map<String, Double> measurements = new TreeMap<String, Double>();
+    // the names of the checks that failed
+    private final List<String> failures = new ArrayList<String>();
+    // results are added to this so the JIT cannot drop the work
+    private long sink = 0;
+
+    /**
+     * Measures the allocations, memory and time of the hot path on a
+     * corpus and stores them under names ending in the corpus name
+     */
+    private void measure(String corpus, String[] tokens, String[] punctuated) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            runFormat(punctuated);
+            runIncrement(new WordCountMap(), tokens);
+            runIncrement(new WordCountHashMap(), tokens);
+        }
+
+        long bytes = JvmCounters.allocatedBytes();
+        long start = System.nanoTime();
+        runFormat(punctuated);
+        long nanos = System.nanoTime() - start;
+        record("alloc.WordCounter.format." + corpus, (double) (JvmCounters.allocatedBytes() - bytes) / punctuated.length);
+        record("time.WordCounter.format." + corpus, (double) nanos / punctuated.length);
+
+        WordCountStore[] stores = {new WordCountMap(), new WordCountHashMap()};
+        for (WordCountStore store : stores) {
+            String name = store.getClass().getName();
+            bytes = JvmCounters.allocatedBytes();
+            start = System.nanoTime();
+            runIncrement(store, tokens);
+            nanos = System.nanoTime() - start;
+            record("alloc." + name + ".incrementCount." + corpus, (double) (JvmCounters.allocatedBytes() - bytes) / tokens.length);
+            record("time." + name + ".incrementCount." + corpus, (double) nanos / tokens.length);
+            record("memory." + name + ".bytesPerWord." + corpus, (double) store.getEstimatedBytes() / store.size());
+            // every word is stored now, so only the counts change
+            bytes = JvmCounters.allocatedBytes();
+            runIncrement(store, tokens);
+            record("alloc." + name + ".incrementExisting." + corpus, (double) (JvmCounters.allocatedBytes() - bytes) / tokens.length);
+        }
+    }
+
+    private void runFormat(String[] punctuated) {
+        for (String token : punctuated) {
+            sink += WordCounter.format(token).length();
+        }
+    }
+
+    private void runIncrement(WordCountStore store, String[] tokens) {
+        for (String token : tokens) {
+            store.incrementCount(token);
+        }
+        sink += store.size();
+    }
+
+    private void record(String name, double value) {
+        measurements.put(name, value);
+    }
+
+    /**
+     * Checks that every ranking of the tokens is the same as the reference
+     */
+    private void checkRankings(String corpus, String[] tokens) throws IOException {
+        // the reference: a HashMap and a sort by rank
+        Map<String, Integer> reference = new HashMap<String, Integer>();
+        for (String token : tokens) {
+            Integer count = reference.get(token);
+            reference.put(token, count == null ? 1 : count + 1);
+        }
+        List<WordCount> expected = new ArrayList<WordCount>();
+        for (Map.Entry<String, Integer> entry : reference.entrySet()) {
+            expected.add(new WordCount(entry.getKey(), entry.getValue()));
+        }
+        Collections.sort(expected, Quicksort.RANK_ORDER);
+        // small enough for the stores to select the top words with topN
+        int small = Math.max(1, expected.size() / 16);
+        check(corpus + " ranking the first " + small + " words uses Quicksort.topN",
+              Quicksort.prefersTopN(small, expected.size()));
+        int large = expected.size() - 1;
+
+        WordCountMap trie = new WordCountMap();
+        WordCountHashMap hash = new WordCountHashMap();
+        for (String token : tokens) {
+            trie.incrementCount(token);
+            hash.incrementCount(token);
+        }
+        compare(corpus, "WordCountMap.getWordCountsByCount()", expected, trie.getWordCountsByCount());
+        compare(corpus, "WordCountMap.getWordCountsByCount(small)", prefix(expected, small),
+                trie.getWordCountsByCount(small));
+        compare(corpus, "WordCountMap.getWordCountsByCount(large)", prefix(expected, large),
+                trie.getWordCountsByCount(large));
+        compare(corpus, "WordCountMap.getWordCountTable()", expected, trie.getWordCountTable().toList());
+        compare(corpus, "WordCountHashMap.getWordCountsByCount()", expected, hash.getWordCountsByCount());
+        compare(corpus, "WordCountHashMap.getWordCountsByCount(small)", prefix(expected, small),
+                hash.getWordCountsByCount(small));
+        compare(corpus, "WordCountHashMap.getWordCountsByCount(large)", prefix(expected, large),
+                hash.getWordCountsByCount(large));
+        compare(corpus, "WordCountHashMap.getWordCountTable()", expected, hash.getWordCountTable().toList());
+
+        // the cloud of a table is the same as the cloud of its list, and
+        // the title is put in literally
+        WordCountTable table = trie.getWordCountTable();
+        // the colors go round every 4 words, so both clouds start on the same color
+        int cloudWords = Math.min(100, table.size()) / 4 * 4;
+        String title = corpus + " $1 \\ cloud";
+        String tableHTML = WordCloudMaker.getWordCloudHTML(title, table, cloudWords, new Random(9));
+        String listHTML = WordCloudMaker.getWordCloudHTML(title, table.toList(cloudWords), new Random(9));
+        check(corpus + " WordCloudMaker.getWordCloudHTML(table) matches list",
+              tableHTML.equals(listHTML) && tableHTML.contains("<h1>" + title + "</h1>"));
+
+        // rank, change a few words and rank again, so the second ranking is
+        // patched into the cached snapshot of the top words or of all words
+        // (WordCountMap patches up to 64 changed words)
+        String[] changed = Arrays.copyOf(tokens, 32);
+        for (int full = 0; full < 2; full++) {
+            WordCountMap patched = new WordCountMap();
+            WordCountMap rebuilt = new WordCountMap();
+            for (String token : tokens) {
+                patched.incrementCount(token);
+                rebuilt.incrementCount(token);
+            }
+            patched.getRankedSnapshot(full == 1 ? expected.size() : small);
+            for (int i = 0; i < changed.length; i++) {
+                WordCountMap[] maps = {patched, rebuilt};
+                for (WordCountMap map : maps) {
+                    if (i % 2 == 0) {
+                        map.decrementCount(changed[i]);
+                    } else {
+                        map.incrementCount(changed[i], i * i);
+                    }
+                }
+            }
+            String snapshot = full == 1 ? "all words" : "top words";
+            compare(corpus, "WordCountMap patched " + snapshot + " (small)", rebuilt.getWordCountsByCount(small),
+                    patched.getWordCountsByCount(small));
+            compare(corpus, "WordCountMap patched " + snapshot + " (all)", rebuilt.getWordCountsByCount(),
+                    patched.getWordCountsByCount());
+        }
+
+        WordCount[] shuffled = expected.toArray(new WordCount[expected.size()]);
+        Collections.shuffle(Arrays.asList(shuffled), new Random(5));
+        WordCount[] array = shuffled.clone();
+        Quicksort.rankSort(array);
+        compare(corpus, "Quicksort.rankSort", expected, Arrays.asList(array));
+        compare(corpus, "Quicksort.topN", prefix(expected, small),
+                Arrays.asList(Quicksort.topN(shuffled.clone(), small)));
+        // quicksort only orders by count, so only the counts are compared
+        array = shuffled.clone();
+        Quicksort.quicksort(array);
+        compareCounts(corpus, "Quicksort.quicksort", expected, Arrays.asList(array));
+        array = shuffled.clone();
+        Quicksort.parallelQuicksort(array);
+        compareCounts(corpus, "Quicksort.parallelQuicksort", expected, Arrays.asList(array));
+
+        // a budget small enough to spill several runs
+        ExternalWordCounter external = new ExternalWordCounter(trie.getEstimatedBytes() / 4, null);
+        try {
+            for (String token : tokens) {
+                external.incrementCount(token);
+            }
+            compare(corpus, "ExternalWordCounter.getWordCountsByCount(small)", prefix(expected, small),
+                    external.getWordCountsByCount(small));
+            ByteArrayOutputStream printed = new ByteArrayOutputStream();
+            external.printWordCountsByCount(new PrintStream(printed, true, "UTF-8"));
+            StringBuilder expectedText = new StringBuilder();
+            for (WordCount wordCount : expected) {
+                expectedText.append(wordCount.getWord()).append(':').append(wordCount.getCount())
+                            .append(System.lineSeparator());
+            }
+            check(corpus + " ExternalWordCounter.printWordCountsByCount (" + external.getNumRuns() + " runs, fan-in "
+                  + external.getFanIn() + ")",
+                  expectedText.toString().equals(printed.toString("UTF-8")));
+        } finally {
+            external.close();
+        }
+
+        SlidingWindowCounter window = new SlidingWindowCounter(tokens.length, 0);
+        for (int i = 0; i < tokens.length; i++) {
+            window.add(tokens[i], i);
+        }
+        compare(corpus, "SlidingWindowCounter.getWordCountsByCount(small)", prefix(expected, small),
+                window.getWordCountsByCount(small));
+    }
+
+    /**
+     * Checks that the cloud command gives the same cloud with and without
+     * a deadline longer than the run, on a small input with enough
+     * non-stop words and with too few of them
+     */
+    private void checkClouds() throws IOException {
+        File input = File.createTempFile("cloud", ".txt");
+        File plain = File.createTempFile("cloud", ".html");
+        File deadline = File.createTempFile("cloud", ".html");
+        try {
+            PrintStream out = new PrintStream(input, "UTF-8");
+            out.println("the the the a a of and cat dog. to in is it cat");
+            out.close();
+            int[] numWords = {2, 5};
+            for (int n : numWords) {
+                WordCounter.main(new String[] {"cloud", input.getPath(), "" + n, plain.getPath()});
+                WordCounter.main(new String[] {"cloud", input.getPath(), "" + n, deadline.getPath(), "--deadline=10s"});
+                List<String> plainWords = cloudWords(plain);
+                check("cloud " + n + " of a small input (" + plainWords.size() + " words) matches --deadline",
+                      !plainWords.isEmpty() && plainWords.equals(cloudWords(deadline)));
+            }
+        } finally {
+            input.delete();
+            plain.delete();
+            deadline.delete();
+        }
+    }
+
+    /**
+     * Returns the font sizes and words of the cloud in the HTML file,
+     * sorted, leaving out the colors and the order, which change from run
+     * to run
+     */
+    private static List<String> cloudWords(File html) throws IOException {
+        List<String> words = new ArrayList<String>();
+        InputStream in = new FileInputStream(html);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+                bytes.write(buffer, 0, read);
+            }
+            for (String line : bytes.toString("UTF-8").split("\n")) {
+                int sizeStart = line.indexOf("font-size:");
+                if (sizeStart >= 0) {
+                    words.add(line.substring(sizeStart));
+                }
+            }
+        } finally {
+            in.close();
+        }
+        Collections.sort(words);
+        return words;
+    }
+
+    private static List<WordCount> prefix(List<WordCount> list, int length) {
+        return list.subList(0, Math.min(length, list.size()));
+    }
+
+    private void compare(String corpus, String path, List<WordCount> expected, List<WordCount> actual) {
+        boolean same = expected.size() == actual.size();
+        for (int i = 0; same && i < expected.size(); i++) {
+            same = expected.get(i).getWord().equals(actual.get(i).getWord())
+                   && expected.get(i).getCount() == actual.get(i).getCount();
+        }
+        check(corpus + " " + path, same);
+    }
+
+    private void compareCounts(String corpus, String path, List<WordCount> expected, List<WordCount> actual) {
+        boolean same = expected.size() == actual.size();
+        for (int i = 0; same && i < expected.size(); i++) {
+            same = expected.get(i).getCount() == actual.get(i).getCount();
+        }
+        check(corpus + " " + path, same);
+    }
+
+    private void check(String name, boolean passed) {
+        System.out.printf("%-70s %s%n", name, passed ? "ok" : "FAILED");
+        if (!passed) {
+            failures.add(name);
+        }
+    }
+
+    /**
+     * Compares the measurements with the baselines
+     */
+    private void checkBaselines(Properties baselines, boolean checkTime) {
+        for (Map.Entry<String, Double> entry : measurements.entrySet()) {
+            String name = entry.getKey();
+            double value = entry.getValue();
+            String baseline = baselines.getProperty(name);
+            boolean isTime = name.startsWith("time.");
+            double absoluteLimit = absoluteLimit(name);
+            if (baseline == null) {
+                boolean passed = value <= absoluteLimit;
+                System.out.printf("%-60s %12.1f   (no baseline)   %s%n", name, value, passed ? "" : "FAILED");
+                if (!passed) {
+                    failures.add(name);
+                }
+                continue;
+            }
+            double limit = isTime ? Double.parseDouble(baseline) * (1 + TIME_TOLERANCE)
+                                  : Double.parseDouble(baseline) * (1 + TOLERANCE) + SLACK_BYTES;
+            limit = Math.min(limit, absoluteLimit);
+            boolean passed = value <= limit || (isTime && !checkTime);
+            System.out.printf("%-60s %12.1f   baseline %10s   %s%n", name, value, baseline,
+                              passed ? (value <= limit ? "ok" : "slow (not checked)") : "FAILED");
+            if (!passed) {
+                failures.add(name);
+            }
+        }
+    }
+
+    /**
+     * Returns the absolute limit on the named measurement, or infinity if
+     * it has none
+     */
+    private static double absoluteLimit(String name) {
+        for (int i = 0; i < LIMIT_NAMES.length; i++) {
+            if (name.startsWith(LIMIT_NAMES[i])) {
+                return LIMITS[i];
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Runs the checks on the seeded corpora, then records or compares the
+     * measurements
+     */
+    public static void main(String[] args) throws IOException {
+        boolean recordBaselines = false;
+        boolean checkTime = false;
+        String baselineFile = "regression-baselines.properties";
+        for (String arg : args) {
+            if (arg.equals("--record")) {
+                recordBaselines = true;
+            } else if (arg.equals("--check-time")) {
+                checkTime = true;
+            } else if (arg.startsWith("--baselines=")) {
+                baselineFile = arg.substring("--baselines=".length());
+            }
+        }
+
+        RegressionCheck regressionCheck = new RegressionCheck();
+        String[] corpora = {"vocab1000-short", "vocab50000-english"};
+        int[] vocabularySizes = {1000, 50000};
+        String[] lengthDistributions = {"short", "english"};
+        for (int i = 0; i < corpora.length; i++) {
+            String[] tokens = CorpusGenerator.words(vocabularySizes[i], lengthDistributions[i], NUM_TOKENS, 42 + i);
+            regressionCheck.checkRankings(corpora[i], tokens);
+            String[] punctuated = CorpusGenerator.punctuatedTokens(vocabularySizes[i], lengthDistributions[i], NUM_TOKENS, 42 + i);
+            regressionCheck.measure(corpora[i], tokens, punctuated);
+        }
+        regressionCheck.checkClouds();
+
+        if (recordBaselines) {
+            Properties baselines = new Properties();
+            for (Map.Entry<String, Double> entry : regressionCheck.measurements.entrySet()) {
+                baselines.setProperty(entry.getKey(), String.format("%.1f", entry.getValue()));
+            }
+            OutputStream out = new FileOutputStream(baselineFile);
+            try {
+                baselines.store(out, "Baselines for RegressionCheck: bytes allocated per token, "
+                                + "estimated bytes per word and ns per token");
+            } finally {
+                out.close();
+            }
+            System.out.println("Recorded " + baselines.size() + " baselines in " + baselineFile);
+        } else {
+            Properties baselines = new Properties();
+            if (new File(baselineFile).exists()) {
+                InputStream in = new FileInputStream(baselineFile);
+                try {
+                    baselines.load(in);
+                } finally {
+                    in.close();
+                }
+            } else {
+                System.out.println("No baselines in " + baselineFile + "; run with --record to create them");
+            }
+            regressionCheck.checkBaselines(baselines, checkTime);
+        }
+
+        System.out.println("(checksum " + regressionCheck.sink + ")");
+        if (!regressionCheck.failures.isEmpty()) {
+            System.out.println(regressionCheck.failures.size() + " checks FAILED: " + regressionCheck.failures);
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+}
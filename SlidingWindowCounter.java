@@ -0,0 +1,363 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the words of a continuous stream over a sliding window: the last
+ * maxTokens words, the words of the last maxAge milliseconds, or both.
+ *
+ * Each word in the window is kept in a ring as an int ID from a dictionary
+ * of the words currently in the window, so the window costs 4 bytes per
+ * token (12 with a time limit). When a token leaves the window its word is
+ * retracted from the WordCountMap with decrementCount, and an ID whose word
+ * is no longer in the window is reused.
+ *
+ * For a live top N, the IDs are also kept in buckets by count: bucket c is
+ * a doubly linked list of the IDs with count c. A count only ever changes by
+ * one, which moves an ID to the next bucket, so adding and expiring a token
+ * take constant time however large the window is. The non-empty buckets
+ * are linked in order of count as well, so the top N skips the counts that
+ * no word in the window has.
+ * @author: Yitong Chen
+ */
+public class SlidingWindowCounter {
+    // the most tokens in the window, or 0 for no limit
+    private final int maxTokens;
+    // the most milliseconds a token stays in the window, or 0 for no limit
+    private final long maxAge;
+
+    // the counts of the words in the window
+    private final WordCountMap wordCountMap;
+    // the IDs of the words in the window
+    private final Map<String, Integer> ids;
+    // words[id] is the word with the given ID, or null if the ID is free
+    private String[] words;
+    // the IDs that are free to reuse, used as a stack
+    private int[] freeIds;
+    private int numFreeIds;
+    // the number of IDs handed out so far
+    private int numIds;
+
+    // the ring of the IDs of the tokens in the window, oldest first
+    // starting at ringStart, and the times they were added
+    private int[] ring;
+    private long[] times;
+    private int ringStart;
+    private int ringSize;
+
+    // counts[id] is the count of the word with that ID in the window
+    private int[] counts;
+    // the previous and next IDs in the same bucket, or -1
+    private int[] previous;
+    private int[] next;
+    // bucketHeads[c] is the first ID with count c, or -1
+    private int[] bucketHeads;
+    // the counts with a non-empty bucket, in a circular doubly linked list
+    // through 0: largerCount[c] is the next larger such count and
+    // smallerCount[c] the next smaller one, so smallerCount[0] is the
+    // largest count in the window
+    private int[] largerCount;
+    private int[] smallerCount;
+
+    /**
+     * Constructs an empty window.
+     * @param maxTokens the most tokens in the window, or 0 for no limit
+     * @param maxAge the most milliseconds a token stays in the window,
+     *        or 0 for no limit
+     */
+    public SlidingWindowCounter(int maxTokens, long maxAge) {
+        if (maxTokens <= 0 && maxAge <= 0) {
+            throw new IllegalArgumentException("The window needs a token limit or a time limit");
+        }
+        this.maxTokens = Math.max(maxTokens, 0);
+        this.maxAge = Math.max(maxAge, 0);
+        wordCountMap = new WordCountMap();
+        ids = new HashMap<String, Integer>();
+        int capacity = 1024;
+        if (maxTokens > 0) {
+            capacity = maxTokens;
+        }
+        ring = new int[capacity];
+        if (maxAge > 0) {
+            times = new long[capacity];
+        }
+        words = new String[16];
+        freeIds = new int[16];
+        counts = new int[16];
+        previous = new int[16];
+        next = new int[16];
+        bucketHeads = new int[16];
+        Arrays.fill(bucketHeads, -1);
+        largerCount = new int[16];
+        smallerCount = new int[16];
+    }
+
+    /**
+     * Adds word to the window at the given time in milliseconds, first
+     * expiring the tokens that fall out of the window. Adding an empty
+     * string is ignored.
+     */
+    public void add(String word, long time) {
+        if (word.length() == 0) {
+            return;
+        }
+        expire(time);
+        if (maxTokens > 0 && ringSize == maxTokens) {
+            removeOldest();
+        }
+
+        Integer id = ids.get(word);
+        if (id == null) {
+            id = newId(word);
+        }
+        if (ringSize == ring.length) {
+            growRing();
+        }
+        int slot = (ringStart + ringSize) % ring.length;
+        ring[slot] = id;
+        if (times != null) {
+            times[slot] = time;
+        }
+        ringSize++;
+
+        wordCountMap.incrementCount(word);
+        moveToBucket(id, counts[id] + 1);
+    }
+
+    /**
+     * Removes the tokens that are older than the time limit at the given
+     * time in milliseconds
+     */
+    public void expire(long time) {
+        if (maxAge > 0) {
+            while (ringSize > 0 && times[ringStart] <= time - maxAge) {
+                removeOldest();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest token from the window
+     */
+    private void removeOldest() {
+        int id = ring[ringStart];
+        ringStart = (ringStart + 1) % ring.length;
+        ringSize--;
+
+        wordCountMap.decrementCount(words[id]);
+        moveToBucket(id, counts[id] - 1);
+        if (counts[id] == 0) {
+            // the word has left the window, so its ID can be reused
+            ids.remove(words[id]);
+            words[id] = null;
+            freeIds[numFreeIds] = id;
+            numFreeIds++;
+        }
+    }
+
+    /**
+     * Gives word an ID, reusing a free one if there is one
+     */
+    private int newId(String word) {
+        int id;
+        if (numFreeIds > 0) {
+            numFreeIds--;
+            id = freeIds[numFreeIds];
+        } else {
+            id = numIds;
+            numIds++;
+            if (id == words.length) {
+                int length = words.length * 2;
+                words = Arrays.copyOf(words, length);
+                freeIds = Arrays.copyOf(freeIds, length);
+                counts = Arrays.copyOf(counts, length);
+                previous = Arrays.copyOf(previous, length);
+                next = Arrays.copyOf(next, length);
+            }
+        }
+        words[id] = word;
+        counts[id] = 0;
+        ids.put(word, id);
+        return id;
+    }
+
+    /**
+     * Doubles the ring, which only happens when there is no token limit
+     */
+    private void growRing() {
+        int[] newRing = new int[ring.length * 2];
+        for (int i = 0; i < ringSize; i++) {
+            newRing[i] = ring[(ringStart + i) % ring.length];
+        }
+        if (times != null) {
+            long[] newTimes = new long[newRing.length];
+            for (int i = 0; i < ringSize; i++) {
+                newTimes[i] = times[(ringStart + i) % times.length];
+            }
+            times = newTimes;
+        }
+        ring = newRing;
+        ringStart = 0;
+    }
+
+    /**
+     * Moves the ID from the bucket of its current count to the bucket of
+     * the new count, which differs from it by one
+     */
+    private void moveToBucket(int id, int newCount) {
+        int oldCount = counts[id];
+        if (newCount == bucketHeads.length) {
+            int length = bucketHeads.length;
+            bucketHeads = Arrays.copyOf(bucketHeads, length * 2);
+            Arrays.fill(bucketHeads, length, bucketHeads.length, -1);
+            largerCount = Arrays.copyOf(largerCount, length * 2);
+            smallerCount = Arrays.copyOf(smallerCount, length * 2);
+        }
+        if (newCount > 0 && bucketHeads[newCount] < 0) {
+            // the new count is next to the old one, whose bucket is still
+            // in the list (0 always is)
+            if (newCount > oldCount) {
+                linkCount(newCount, oldCount, largerCount[oldCount]);
+            } else {
+                linkCount(newCount, smallerCount[oldCount], oldCount);
+            }
+        }
+        if (oldCount > 0) {
+            // unlink from the old bucket
+            if (previous[id] >= 0) {
+                next[previous[id]] = next[id];
+            } else {
+                bucketHeads[oldCount] = next[id];
+            }
+            if (next[id] >= 0) {
+                previous[next[id]] = previous[id];
+            }
+            if (bucketHeads[oldCount] < 0) {
+                largerCount[smallerCount[oldCount]] = largerCount[oldCount];
+                smallerCount[largerCount[oldCount]] = smallerCount[oldCount];
+            }
+        }
+        counts[id] = newCount;
+        if (newCount > 0) {
+            previous[id] = -1;
+            next[id] = bucketHeads[newCount];
+            if (next[id] >= 0) {
+                previous[next[id]] = id;
+            }
+            bucketHeads[newCount] = id;
+        }
+    }
+
+    /**
+     * Links count into the list of non-empty counts between the counts
+     * smaller and larger
+     */
+    private void linkCount(int count, int smaller, int larger) {
+        smallerCount[count] = smaller;
+        largerCount[count] = larger;
+        largerCount[smaller] = count;
+        smallerCount[larger] = count;
+    }
+
+    /**
+     * Returns the count of word in the window
+     */
+    public int getCount(String word) {
+        Integer id = ids.get(word);
+        if (id == null) {
+            return 0;
+        }
+        return counts[id];
+    }
+
+    /**
+     * Returns the number of tokens in the window
+     */
+    public int getNumTokens() {
+        return ringSize;
+    }
+
+    /**
+     * Returns the number of distinct words in the window
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Returns the counts of the words in the window as a WordCountMap
+     */
+    public WordCountMap getWordCountMap() {
+        return wordCountMap;
+    }
+
+    /**
+     * Returns the numWords words in the window with the largest counts,
+     * sorted in decreasing order by count with ties broken by word.
+     * Takes time proportional to numWords plus the number of words that
+     * share the smallest count included, since only non-empty buckets are
+     * visited.
+     */
+    public List<WordCount> getWordCountsByCount(int numWords) {
+        List<WordCount> result = new ArrayList<WordCount>();
+        for (int count = smallerCount[0]; count > 0 && result.size() < numWords; count = smallerCount[count]) {
+            for (int id = bucketHeads[count]; id >= 0; id = next[id]) {
+                result.add(new WordCount(words[id], count));
+            }
+        }
+        WordCount[] wordArray = result.toArray(new WordCount[result.size()]);
+        Quicksort.rankSort(wordArray);
+        int length = Math.min(Math.max(numWords, 0), wordArray.length);
+        return new ArrayList<WordCount>(Arrays.asList(wordArray).subList(0, length));
+    }
+
+    /**
+     * Slides a token window over a seeded Zipf stream and checks the live
+     * top words against a WordCountMap built from the last tokens alone
+     */
+    public static void main(String[] args) {
+        int windowSize = 50000;
+        int numTokens = 1000000;
+        CorpusGenerator generator = new CorpusGenerator(20000, 1.0, "english", 0,
+                                                        new ArrayList<String>(), 7);
+        String[] tokens = new String[numTokens];
+        for (int i = 0; i < numTokens; i++) {
+            tokens[i] = generator.nextWord();
+        }
+
+        SlidingWindowCounter window = new SlidingWindowCounter(windowSize, 0);
+        long start = System.nanoTime();
+        for (int i = 0; i < numTokens; i++) {
+            window.add(tokens[i], i);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        WordCountMap expected = new WordCountMap();
+        for (int i = numTokens - windowSize; i < numTokens; i++) {
+            expected.incrementCount(tokens[i]);
+        }
+        List<WordCount> expectedTop = expected.getWordCountsByCount(20);
+        List<WordCount> windowTop = window.getWordCountsByCount(20);
+        boolean same = expectedTop.size() == windowTop.size();
+        for (int i = 0; same && i < expectedTop.size(); i++) {
+            same = expectedTop.get(i).getWord().equals(windowTop.get(i).getWord())
+                   && expectedTop.get(i).getCount() == windowTop.get(i).getCount();
+        }
+        System.out.println(numTokens + " tokens through a window of " + windowSize + ": "
+                           + (double) elapsed / numTokens + " ns/token");
+        System.out.println("Distinct words in the window: " + window.size() + " (expected "
+                           + expected.size() + ", map " + window.getWordCountMap().size() + ")");
+        System.out.println("Top 20 matches a map of the last " + windowSize + " tokens: " + same);
+        for (int i = 0; i < 5; i++) {
+            System.out.println("  " + windowTop.get(i).getWord() + ": " + windowTop.get(i).getCount());
+        }
+
+        SlidingWindowCounter timeWindow = new SlidingWindowCounter(0, 1000);
+        for (int i = 0; i < 5000; i++) {
+            timeWindow.add(tokens[i], i);
+        }
+        System.out.println("Time window of 1000 ms after 5000 ms holds " + timeWindow.getNumTokens() + " tokens");
+    }
+}
@@ -0,0 +1,143 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The Space-Saving heavy-hitter algorithm: keeps at most capacity words
+ * with a count each. When a new word arrives and the table is full, the
+ * word with the smallest count is replaced and the new word takes over
+ * that count plus one.
+ *
+ * After N words have been added, a count is never below the true count
+ * and exceeds it by at most the error recorded for it, which is at most
+ * N / capacity. Every word whose true count is above N / capacity is
+ * guaranteed to be in the table.
+ * @author: Yitong Chen
+ */
+public class SpaceSaving {
+    // a binary min-heap on counts; words[i] has counts[i] and errors[i]
+    private final String[] words;
+    private final long[] counts;
+    private final long[] errors;
+    // the number of words in the heap
+    private int size;
+    // the position of each word in the heap
+    private final Map<String, Integer> positions;
+
+    /**
+     * Constructs an empty table that tracks at most capacity words
+     */
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        words = new String[capacity];
+        counts = new long[capacity];
+        errors = new long[capacity];
+        size = 0;
+        positions = new HashMap<String, Integer>(capacity * 2);
+    }
+
+    /**
+     * Adds 1 to the count of word
+     */
+    public void add(String word) {
+        Integer position = positions.get(word);
+        if (position != null) {
+            counts[position]++;
+            siftDown(position);
+        } else if (size < words.length) {
+            words[size] = word;
+            counts[size] = 1;
+            errors[size] = 0;
+            positions.put(word, size);
+            size++;
+            siftUp(size - 1);
+        } else {
+            // replace the word with the smallest count
+            positions.remove(words[0]);
+            errors[0] = counts[0];
+            counts[0]++;
+            words[0] = word;
+            positions.put(word, 0);
+            siftDown(0);
+        }
+    }
+
+    /** Returns the number of words in the table */
+    public int size() {
+        return size;
+    }
+
+    /** Returns the word at position i of the table, 0 <= i < size() */
+    public String getWord(int i) {
+        return words[i];
+    }
+
+    /** Returns the count of the word at position i: at least its true count */
+    public long getCount(int i) {
+        return counts[i];
+    }
+
+    /** Returns the most the count at position i can exceed the true count */
+    public long getError(int i) {
+        return errors[i];
+    }
+
+    /**
+     * Returns the most any count in the table can exceed the true count:
+     * the smallest count once the table is full, which is at most
+     * N / capacity, and 0 before that
+     */
+    public long errorBound() {
+        if (size < words.length) {
+            return 0;
+        }
+        return counts[0];
+    }
+
+    /**
+     * Returns the count of word, or 0 if it is not in the table
+     */
+    public long getCount(String word) {
+        Integer position = positions.get(word);
+        if (position == null) {
+            return 0;
+        }
+        return counts[position];
+    }
+
+    private void siftUp(int i) {
+        while (i > 0 && counts[(i - 1) / 2] > counts[i]) {
+            swap(i, (i - 1) / 2);
+            i = (i - 1) / 2;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && counts[child + 1] < counts[child]) {
+                child++;
+            }
+            if (counts[i] <= counts[child]) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        String word = words[i];
+        words[i] = words[j];
+        words[j] = word;
+        long count = counts[i];
+        counts[i] = counts[j];
+        counts[j] = count;
+        long error = errors[i];
+        errors[i] = errors[j];
+        errors[j] = error;
+        positions.put(words[i], i);
+        positions.put(words[j], j);
+    }
+}
@@ -0,0 +1,409 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class holds the word counts of a set of documents for TF-IDF word
+ * clouds, where a word ranks high in a document if it is frequent there
+ * but rare in the other documents.
+ *
+ * All the documents share one term dictionary from word to int ID. Each
+ * document keeps its counts as a sparse vector: the sorted IDs of the terms
+ * it contains and their counts, in two int arrays. The document frequency
+ * of each term, the number of documents containing it, is kept in one int
+ * array. The documents are read in parallel in a fork-join pool.
+ *
+ * The TF-IDF score of a term in a set of documents is its count in those
+ * documents times log(number of documents / document frequency).
+ * @author: Yitong Chen
+ */
+public class TfIdfCorpus {
+    // the scores of the top words are scaled to counts from 1 to this
+    // for WordCloudMaker
+    private static final int MAX_SCALED_COUNT = 1000;
+    // a task reads at most this many documents itself
+    private static final int DOCUMENTS_PER_TASK = 4;
+
+    // the shared term dictionary, filled in by all the reading threads
+    private final ConcurrentHashMap<String, Integer> ids;
+    private final AtomicInteger nextId;
+    // terms[id] is the word with that ID; null for an ID that was handed
+    // out to a thread that lost the race to add its word
+    private String[] terms;
+    private final Set<String> stopWords;
+
+    private final String[] names;
+    private final Map<String, Integer> documentIndex;
+    // the sparse count vector of each document
+    private final int[][] termIds;
+    private final int[][] counts;
+    // documentFrequencies[id] is the number of documents containing the term
+    private int[] documentFrequencies;
+    // the number of tokens read and stop words dropped in all the documents
+    private final AtomicLong tokensRead;
+    private final AtomicLong stopWordsDropped;
+
+    /**
+     * Reads the given documents, in parallel in the given pool
+     * @param files the documents
+     * @param stopWords the words that are not counted
+     * @param pool the pool the documents are read in
+     */
+    public TfIdfCorpus(List<File> files, Collection<String> stopWords, ForkJoinPool pool) throws FileNotFoundException {
+        ids = new ConcurrentHashMap<String, Integer>();
+        nextId = new AtomicInteger();
+        tokensRead = new AtomicLong();
+        stopWordsDropped = new AtomicLong();
+        this.stopWords = new HashSet<String>(stopWords);
+        names = new String[files.size()];
+        documentIndex = new HashMap<String, Integer>();
+        termIds = new int[files.size()][];
+        counts = new int[files.size()][];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = files.get(i).getName();
+            documentIndex.put(names[i], i);
+        }
+
+        ReadTask task = new ReadTask(files, 0, files.size());
+        pool.invoke(task);
+        if (task.failure != null) {
+            throw task.failure;
+        }
+
+        terms = new String[nextId.get()];
+        for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+            terms[entry.getValue()] = entry.getKey();
+        }
+        documentFrequencies = new int[terms.length];
+        for (int[] document : termIds) {
+            for (int id : document) {
+                documentFrequencies[id]++;
+            }
+        }
+    }
+
+    /**
+     * Fork-join task that reads the documents from index first up to
+     * index last, splitting the range in halves while it is large
+     */
+    private class ReadTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<File> files;
+        private final int first;
+        private final int last;
+        // the first document that could not be read, if any
+        private FileNotFoundException failure;
+
+        private ReadTask(List<File> files, int first, int last) {
+            this.files = files;
+            this.first = first;
+            this.last = last;
+        }
+
+        protected void compute() {
+            if (last - first <= DOCUMENTS_PER_TASK) {
+                for (int i = first; i < last && failure == null; i++) {
+                    try {
+                        readDocument(i, files.get(i));
+                    } catch (FileNotFoundException e) {
+                        failure = e;
+                    }
+                }
+            } else {
+                int mid = (first + last) >>> 1;
+                ReadTask left = new ReadTask(files, first, mid);
+                ReadTask right = new ReadTask(files, mid, last);
+                invokeAll(left, right);
+                failure = left.failure != null ? left.failure : right.failure;
+            }
+        }
+    }
+
+    /**
+     * Reads a document into its sparse count vector. The IDs of its tokens
+     * are collected and sorted, so equal IDs are next to each other and
+     * can be counted without a map per document.
+     */
+    private void readDocument(int index, File file) throws FileNotFoundException {
+        Scanner scanner = new Scanner(file);
+        int[] tokens = new int[1024];
+        int numTokens = 0;
+        long numRead = 0;
+        long numStopWords = 0;
+        while (scanner.hasNext()) {
+            String word = WordCounter.format(scanner.next().toLowerCase());
+            numRead++;
+            if (stopWords.contains(word)) {
+                numStopWords++;
+            } else if (word.length() > 0) {
+                if (numTokens == tokens.length) {
+                    tokens = Arrays.copyOf(tokens, tokens.length * 2);
+                }
+                tokens[numTokens] = intern(word);
+                numTokens++;
+            }
+        }
+        scanner.close();
+        tokensRead.addAndGet(numRead);
+        stopWordsDropped.addAndGet(numStopWords);
+
+        Arrays.sort(tokens, 0, numTokens);
+        int numTerms = 0;
+        for (int i = 0; i < numTokens; i++) {
+            if (i == 0 || tokens[i] != tokens[i - 1]) {
+                numTerms++;
+            }
+        }
+        int[] documentIds = new int[numTerms];
+        int[] documentCounts = new int[numTerms];
+        int term = -1;
+        for (int i = 0; i < numTokens; i++) {
+            if (i == 0 || tokens[i] != tokens[i - 1]) {
+                term++;
+                documentIds[term] = tokens[i];
+            }
+            documentCounts[term]++;
+        }
+        termIds[index] = documentIds;
+        counts[index] = documentCounts;
+    }
+
+    /**
+     * Returns the ID of word in the shared dictionary, adding it if needed
+     */
+    private int intern(String word) {
+        Integer id = ids.get(word);
+        if (id == null) {
+            Integer newId = nextId.getAndIncrement();
+            id = ids.putIfAbsent(word, newId);
+            if (id == null) {
+                id = newId;
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Returns the number of documents
+     */
+    public int getNumDocuments() {
+        return names.length;
+    }
+
+    /**
+     * Returns the name of the document with the given index
+     */
+    public String getName(int document) {
+        return names[document];
+    }
+
+    /**
+     * Returns the index of the document with the given file name, or -1
+     */
+    public int indexOf(String name) {
+        Integer index = documentIndex.get(name);
+        if (index == null) {
+            return -1;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the number of distinct terms in all the documents
+     */
+    public int getNumTerms() {
+        return ids.size();
+    }
+
+    /**
+     * Returns the number of tokens read from all the documents
+     */
+    public long getTokensRead() {
+        return tokensRead.get();
+    }
+
+    /**
+     * Returns the number of stop words dropped from all the documents
+     */
+    public long getStopWordsDropped() {
+        return stopWordsDropped.get();
+    }
+
+    /**
+     * Returns the number of documents containing word
+     */
+    public int getDocumentFrequency(String word) {
+        Integer id = ids.get(word);
+        if (id == null) {
+            return 0;
+        }
+        return documentFrequencies[id];
+    }
+
+    /**
+     * Returns an estimate of the bytes of heap retained by the count
+     * vectors and the document frequencies, not counting the dictionary
+     */
+    public long getEstimatedBytes() {
+        long bytes = 16 + 4L * documentFrequencies.length;
+        for (int[] document : termIds) {
+            bytes += 2 * (16 + 4L * document.length);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the numWords terms with the highest TF-IDF scores in the
+     * given documents, in decreasing order by score with ties broken by
+     * word. The scores are scaled to counts from 1 to MAX_SCALED_COUNT so
+     * the list can be given to WordCloudMaker. Terms found in every
+     * document score 0 and are left out.
+     * @param documents the indexes of the documents
+     */
+    public List<WordCount> getTopTerms(int[] documents, int numWords) {
+        int[][] sum = sumCounts(documents);
+        int[] sumIds = sum[0];
+        int[] sumCounts = sum[1];
+
+        // keep the best terms in a bounded min-heap, whose root is the
+        // worst of them, so only numWords terms are ever ordered
+        int capacity = Math.min(Math.max(numWords, 0), sumIds.length);
+        int[] heapIds = new int[capacity];
+        double[] heapScores = new double[capacity];
+        int heapSize = 0;
+        for (int i = 0; i < sumIds.length && capacity > 0; i++) {
+            int id = sumIds[i];
+            double idf = Math.log((double) names.length / documentFrequencies[id]);
+            if (idf <= 0) {
+                continue;
+            }
+            double score = sumCounts[i] * idf;
+            if (heapSize < capacity) {
+                // sift the new term up from the bottom
+                int child = heapSize;
+                heapSize++;
+                while (child > 0) {
+                    int parent = (child - 1) >>> 1;
+                    if (!ranksBefore(heapScores[parent], heapIds[parent], score, id)) {
+                        break;
+                    }
+                    heapIds[child] = heapIds[parent];
+                    heapScores[child] = heapScores[parent];
+                    child = parent;
+                }
+                heapIds[child] = id;
+                heapScores[child] = score;
+            } else if (ranksBefore(score, id, heapScores[0], heapIds[0])) {
+                siftDown(heapIds, heapScores, heapSize, id, score);
+            }
+        }
+
+        // take the worst term off the heap each time, filling the ranks
+        // from the bottom up
+        WordCount[] result = new WordCount[heapSize];
+        double topScore = 0;
+        for (int rank = heapSize - 1; rank >= 0; rank--) {
+            int id = heapIds[0];
+            double score = heapScores[0];
+            if (rank > 0) {
+                siftDown(heapIds, heapScores, rank, heapIds[rank], heapScores[rank]);
+            }
+            heapScores[rank] = score;
+            heapIds[rank] = id;
+            topScore = score;
+        }
+        for (int rank = 0; rank < heapSize; rank++) {
+            int scaled = (int) Math.max(1, Math.round(heapScores[rank] / topScore * MAX_SCALED_COUNT));
+            result[rank] = new WordCount(terms[heapIds[rank]], scaled);
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Returns true if the term with ID a and score scoreA ranks before the
+     * term with ID b and score scoreB: by decreasing score, then by word
+     */
+    private boolean ranksBefore(double scoreA, int a, double scoreB, int b) {
+        if (scoreA != scoreB) {
+            return scoreA > scoreB;
+        }
+        return terms[a].compareTo(terms[b]) < 0;
+    }
+
+    /**
+     * Puts the given term at the root of the min-heap of the first size
+     * entries and sifts it down to its place
+     */
+    private void siftDown(int[] heapIds, double[] heapScores, int size, int id, double score) {
+        int parent = 0;
+        while (true) {
+            int child = 2 * parent + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && ranksBefore(heapScores[child], heapIds[child], heapScores[child + 1], heapIds[child + 1])) {
+                child++;
+            }
+            if (!ranksBefore(score, id, heapScores[child], heapIds[child])) {
+                break;
+            }
+            heapIds[parent] = heapIds[child];
+            heapScores[parent] = heapScores[child];
+            parent = child;
+        }
+        heapIds[parent] = id;
+        heapScores[parent] = score;
+    }
+
+    /**
+     * Returns the counts of the given documents added together as a sparse
+     * vector {term IDs, counts}. A single document's vector is returned as
+     * it is; otherwise the counts are added up in an int array by term ID.
+     */
+    private int[][] sumCounts(int[] documents) {
+        if (documents.length == 1) {
+            return new int[][] {termIds[documents[0]], counts[documents[0]]};
+        }
+        int[] termCounts = new int[terms.length];
+        int[] sumIds = new int[16];
+        int numIds = 0;
+        for (int document : documents) {
+            for (int i = 0; i < termIds[document].length; i++) {
+                int id = termIds[document][i];
+                if (termCounts[id] == 0) {
+                    if (numIds == sumIds.length) {
+                        sumIds = Arrays.copyOf(sumIds, numIds * 2);
+                    }
+                    sumIds[numIds] = id;
+                    numIds++;
+                }
+                termCounts[id] += counts[document][i];
+            }
+        }
+        int[] sumCounts = new int[numIds];
+        for (int i = 0; i < numIds; i++) {
+            sumCounts[i] = termCounts[sumIds[i]];
+        }
+        return new int[][] {Arrays.copyOf(sumIds, numIds), sumCounts};
+    }
+
+    /**
+     * Returns the top TF-IDF terms of one document, as getTopTerms
+     */
+    public List<WordCount> getTopTerms(int document, int numWords) {
+        return getTopTerms(new int[] {document}, numWords);
+    }
+}
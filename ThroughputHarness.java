@@ -0,0 +1,181 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+
+/**
+ * Runs the byCount and cloud commands of WordCounter end to end on an input
+ * file (for example one written by CorpusGenerator) and reports, for each
+ * phase, the wall time, the garbage collection count and time, and the peak
+ * resident set size so far, followed by the overall MB/s and tokens/s.
+ *
+ * Usage: java ThroughputHarness <inputFile> [byCount|cloud|both] [numWordsToInclude]
+ *
+ * @author: Yitong Chen
+ */
+public class ThroughputHarness {
+    // the size of the input file in bytes
+    private final long inputBytes;
+    // the time, gc count and gc time at the start of the current phase
+    private long phaseStart;
+    private long phaseGcCount;
+    private long phaseGcTime;
+    // the time at the start of the current command
+    private long commandStart;
+
+    /**
+     * Constructs a harness for the given input file
+     */
+    public ThroughputHarness(String inputFileName) {
+        inputBytes = new File(inputFileName).length();
+    }
+
+    /**
+     * Runs "byCount" on the input: loadAndProcess, which counts the tokens
+     * as they are read, and display, with the display output thrown away
+     */
+    public void runByCount(String inputFileName) {
+        startCommand("byCount");
+        WordCounter counter = new WordCounter();
+        startPhase();
+        long numTokens = counter.loadAndProcess(inputFileName);
+        endPhase("load+count");
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            public void write(int b) {
+            }
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        try {
+            counter.display();
+        } finally {
+            System.setOut(out);
+        }
+        endPhase("display");
+        endCommand(numTokens);
+    }
+
+    /**
+     * Runs "cloud" on the input: loadCounts, picking the cloud words,
+     * rendering the HTML and writing it to a temporary file
+     */
+    public void runCloud(String inputFileName, int numWordsToInclude) throws IOException {
+        startCommand("cloud " + numWordsToInclude);
+        WordCounter counter = new WordCounter();
+        startPhase();
+        long numTokens = counter.loadCounts(inputFileName);
+        endPhase("load+count");
+        List<WordCount> cloudWords = counter.getCloudWords(numWordsToInclude);
+        endPhase("sort");
+        String html = WordCloudMaker.getWordCloudHTML(inputFileName, cloudWords);
+        endPhase("render");
+        File outputFile = File.createTempFile("cloud", ".html");
+        counter.writeToFile(html, outputFile.getPath());
+        outputFile.delete();
+        endPhase("write");
+        endCommand(numTokens);
+    }
+
+    private void startCommand(String name) {
+        System.out.println("== " + name + " (" + inputBytes + " bytes)");
+        commandStart = System.nanoTime();
+    }
+
+    private void startPhase() {
+        phaseStart = System.nanoTime();
+        phaseGcCount = JvmCounters.gcCount();
+        phaseGcTime = JvmCounters.gcTime();
+    }
+
+    /**
+     * Prints the measurements of the phase that just ended and starts the next one
+     */
+    private void endPhase(String name) {
+        long now = System.nanoTime();
+        System.out.printf("  %-12s %10.1f ms %6d gcs %8d ms gc %10.1f MB peak RSS %10.1f MB peak heap%n",
+                          name, (now - phaseStart) / 1e6, JvmCounters.gcCount() - phaseGcCount, JvmCounters.gcTime() - phaseGcTime,
+                          peakResidentSetSize() / 1048576.0, peakHeapUsage() / 1048576.0);
+        startPhase();
+    }
+
+    /**
+     * Prints the throughput of the command that just ended
+     */
+    private void endCommand(long numTokens) {
+        double seconds = (System.nanoTime() - commandStart) / 1e9;
+        System.out.printf("  total        %10.1f ms %10.2f MB/s %12.0f tokens/s%n",
+                          seconds * 1000, inputBytes / seconds / 1048576.0, numTokens / seconds);
+    }
+
+    /**
+     * Returns the sum of the peak usage of the heap memory pools in bytes
+     */
+    private static long peakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Returns the peak resident set size of this process in bytes, read from
+     * /proc/self/status, or -1 where that is not available
+     */
+    private static long peakResidentSetSize() {
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader("/proc/self/status"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("VmHWM:")) {
+                        // the value is given in kB
+                        String value = line.substring("VmHWM:".length()).trim().split("\\s+")[0];
+                        return Long.parseLong(value) * 1024;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // not on Linux
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the input file and the commands to run from the command line
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java ThroughputHarness <inputFile> [byCount|cloud|both] [numWordsToInclude]");
+            return;
+        }
+        String inputFileName = args[0];
+        String command = "both";
+        if (args.length > 1) {
+            command = args[1];
+        }
+        int numWordsToInclude = 100;
+        if (args.length > 2) {
+            numWordsToInclude = Integer.parseInt(args[2]);
+        }
+
+        ThroughputHarness harness = new ThroughputHarness(inputFileName);
+        if (command.equals("byCount") || command.equals("both")) {
+            harness.runByCount(inputFileName);
+        }
+        if (command.equals("cloud") || command.equals("both")) {
+            harness.runCloud(inputFileName, numWordsToInclude);
+        }
+    }
+}
@@ -29,13 +29,21 @@ public class WordCloudMaker {
      * Words are sized (small to large) and colored (light to dark) proportionately to
      * frequency (least frequent to most). Word positions are randomized.
      *
-     * NOTE: This method reorders wordCountList.
+     * wordCountList is not changed.
      *
      * @return a string consisting of HTML that will draw the word cloud.
      * @param title the desired title for the word cloud.
      * @param wordCountList the list of (word, frequency) pairs for which a word cloud is desired.
      */
     public static String getWordCloudHTML(String title, List<WordCount> wordCountList) {
+        return getWordCloudHTML(title, wordCountList, new Random());
+    }
+
+    /**
+     * Creates a word cloud as getWordCloudHTML(String, List), placing the
+     * words in an order drawn from randomGenerator.
+     */
+    public static String getWordCloudHTML(String title, List<WordCount> wordCountList, Random randomGenerator) {
         // Get the maximum and minimum frequencies for the words in the wordCountList.
         int maximumFrequency = 0;
         int minimumFrequency = Integer.MAX_VALUE;
@@ -48,42 +56,105 @@ public class WordCloudMaker {
             }
         }
 
-        // Shuffle wordCountList.
-        Random randomGenerator = new Random();
-        for (int k = wordCountList.size(); k > 1; k--) {
-            int indexOfItemToSwap = randomGenerator.nextInt(k);
-            WordCount tempWordCount = wordCountList.get(k - 1);
-            wordCountList.set(k - 1, wordCountList.get(indexOfItemToSwap));
-            wordCountList.set(indexOfItemToSwap, tempWordCount);
+        // Create a String consisting of HTML encoding of the words in wordCountList,
+        // in shuffled order, sized and colored appropriately for their frequencies.
+        StringBuilder wordsInHTML = new StringBuilder();
+        for (int index : shuffledIndexes(wordCountList.size(), randomGenerator)) {
+            wordsInHTML.append(makeHTMLWord(wordCountList.get(index), maximumFrequency, minimumFrequency));
         }
 
-        // Create a String consisting of HTML encoding of the words in wordCountList,
-        // sized and colored appropriately for their frequencies.
-        String wordsInHTML = "";
-        for (WordCount wordCount : wordCountList) {
-            wordsInHTML += makeHTMLWord(wordCount, maximumFrequency, minimumFrequency);
+        return fillTemplate(title, wordsInHTML);
+    }
+
+    /**
+     * Creates a word cloud from the first numWords ranks of a WordCountTable, 
+     * in the same way as getWordCloudHTML(String, List). The words are read
+     * straight from the table, which is not changed.
+     *
+     * @return a string consisting of HTML that will draw the word cloud.
+     * @param title the desired title for the word cloud.
+     * @param table the ranked (word, frequency) table.
+     * @param numWords the number of top ranked words to include.
+     */
+    public static String getWordCloudHTML(String title, WordCountTable table, int numWords) {
+        return getWordCloudHTML(title, table, numWords, new Random());
+    }
+
+    /**
+     * Creates a word cloud as getWordCloudHTML(String, WordCountTable, int),
+     * placing the words in an order drawn from randomGenerator. Given the
+     * same random sequence, the HTML is the same as for the list of the
+     * first numWords ranks of the table.
+     */
+    public static String getWordCloudHTML(String title, WordCountTable table, int numWords, Random randomGenerator) {
+        int size = Math.min(Math.max(numWords, 0), table.size());
+        
+        // Get the maximum and minimum frequencies for the words to include.
+        int maximumFrequency = 0;
+        int minimumFrequency = Integer.MAX_VALUE;
+        for (int rank = 0; rank < size; rank++) {
+            maximumFrequency = Math.max(maximumFrequency, table.getCount(rank));
+            minimumFrequency = Math.min(minimumFrequency, table.getCount(rank));
         }
 
-        // Add the HTML code to surround the words with a box
-        String document = HTML_TEMPLATE.replaceAll("TITLE", title);
-        document = document.replaceAll("WORDS", wordsInHTML);
+        StringBuilder wordsInHTML = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        for (int rank : shuffledIndexes(size, randomGenerator)) {
+            word.setLength(0);
+            table.appendWord(rank, word);
+            wordsInHTML.append(makeHTMLWord(word, table.getCount(rank), maximumFrequency, minimumFrequency));
+        }
+
+        return fillTemplate(title, wordsInHTML);
+    }
+
+    /**
+     * Returns the indexes from 0 to size - 1 in random order, so the words
+     * can be shuffled without changing the list or table they are in.
+     */
+    private static int[] shuffledIndexes(int size, Random randomGenerator) {
+        int[] indexes = new int[size];
+        for (int i = 0; i < size; i++) {
+            indexes[i] = i;
+        }
+        for (int k = size; k > 1; k--) {
+            int indexOfItemToSwap = randomGenerator.nextInt(k);
+            int tempIndex = indexes[k - 1];
+            indexes[k - 1] = indexes[indexOfItemToSwap];
+            indexes[indexOfItemToSwap] = tempIndex;
+        }
+        return indexes;
+    }
 
-        return document;
+    /**
+     * Adds the HTML code to surround the words with a box. The title and
+     * words are put in literally, so '$' and '\' in them are kept as they are.
+     */
+    private static String fillTemplate(String title, CharSequence wordsInHTML) {
+        String document = HTML_TEMPLATE.replace("TITLE", title);
+        return document.replace("WORDS", wordsInHTML);
     }
 
     /**
      * Returns an HTML version of the specified WordCount.
      */
     private static String makeHTMLWord(WordCount wordCount, int maximumFrequency, int minimumFrequency) {
+        return makeHTMLWord(wordCount.getWord(), wordCount.getCount(), maximumFrequency, minimumFrequency);
+    }
+
+    /**
+     * Returns an HTML version of the specified word and count.
+     */
+    private static String makeHTMLWord(CharSequence word, int count, int maximumFrequency, int minimumFrequency) {
         final int maximumFontSize = 96;
         final int minimumFontSize = 14;
-        double ratio = (double)(wordCount.getCount() - minimumFrequency)/(double)(maximumFrequency - minimumFrequency);
+        double ratio = (double)(count - minimumFrequency)/(double)(maximumFrequency - minimumFrequency);
         int fontSize = (int)(maximumFontSize * ratio + (1 - ratio) * minimumFontSize);
         String color = HTML_COLORS[(int)((ratio / 1.01) * 4) + colorIndex];
         colorIndex = (colorIndex + 4) % 16;
         String wordString = "<span style=\"color:#" + color + ";font-size:";
         wordString += fontSize + "px;\">&nbsp";
-        wordString += wordCount.getWord() + "&nbsp</span>\n";
+        wordString += word + "&nbsp</span>\n";
         return wordString;
     }
 }
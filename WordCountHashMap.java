@@ -0,0 +1,350 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class counts words in an open-addressing hash table. It is faster
+ * and smaller than the WordCountMap trie when no prefix queries are needed.
+ *
+ * The characters of all the words are stored one after another in a single
+ * char array (the arena). Each slot of the table holds the arena offset,
+ * length, hash and int count of one word, in parallel int arrays, so no
+ * object is created per word. Collisions are resolved by linear probing.
+ * A removed word is deleted by shifting the following entries of its probe
+ * run back, so there are no tombstones. Its characters stay in the arena
+ * until the arena is compacted, which happens when the dead characters
+ * outnumber the live ones.
+ * @author: Yitong Chen
+ */
+public class WordCountHashMap implements WordCountStore {
+    // the table is grown when more than this fraction of the slots is used
+    private static final double MAX_LOAD = 0.6;
+
+    // the characters of the words, one after another
+    private char[] arena;
+    // the number of characters used in the arena, and how many of them
+    // belong to removed words
+    private int arenaSize;
+    private int deadChars;
+
+    // offsets[slot] is the arena offset of the word in the slot, or -1 if
+    // the slot is empty; the table length is a power of two
+    private int[] offsets;
+    private int[] lengths;
+    private int[] hashes;
+    private int[] counts;
+    // the number of words stored
+    private int size;
+
+    /**
+     * Constructs an empty WordCountHashMap
+     */
+    public WordCountHashMap() {
+        this(16);
+    }
+
+    /**
+     * Constructs an empty WordCountHashMap with room for the given number
+     * of words before it has to grow
+     */
+    public WordCountHashMap(int expectedWords) {
+        int capacity = 16;
+        while (capacity * MAX_LOAD < expectedWords) {
+            capacity *= 2;
+        }
+        allocateTable(capacity);
+        arena = new char[Math.max(expectedWords * 8, 64)];
+        arenaSize = 0;
+        deadChars = 0;
+        size = 0;
+    }
+
+    private void allocateTable(int capacity) {
+        offsets = new int[capacity];
+        Arrays.fill(offsets, -1);
+        lengths = new int[capacity];
+        hashes = new int[capacity];
+        counts = new int[capacity];
+    }
+
+    /**
+     * Spreads the bits of the String hash code, since the table only uses
+     * the low bits
+     */
+    private static int hash(String word) {
+        int h = word.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the slot holding word, or the empty slot where it would be
+     * added if it is not stored
+     */
+    private int find(String word, int hash) {
+        int mask = offsets.length - 1;
+        int slot = hash & mask;
+        while (offsets[slot] >= 0) {
+            if (hashes[slot] == hash && lengths[slot] == word.length() && matches(slot, word)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns true if the word in the slot has the same characters as word
+     */
+    private boolean matches(int slot, String word) {
+        int offset = offsets[slot];
+        for (int i = 0; i < word.length(); i++) {
+            if (arena[offset + i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds 1 to the existing count for word, or adds word to the map with
+     * a count of 1 if it was not already present. Adding an empty string is
+     * ignored.
+     */
+    public void incrementCount(String word) {
+        if (word.length() == 0) {
+            return;
+        }
+        int hash = hash(word);
+        int slot = find(word, hash);
+        if (offsets[slot] >= 0) {
+            counts[slot]++;
+            return;
+        }
+        if (size + 1 > offsets.length * MAX_LOAD) {
+            rehash(offsets.length * 2);
+            slot = find(word, hash);
+        }
+        if (arenaSize + word.length() > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + word.length()));
+        }
+        word.getChars(0, word.length(), arena, arenaSize);
+        offsets[slot] = arenaSize;
+        lengths[slot] = word.length();
+        hashes[slot] = hash;
+        counts[slot] = 1;
+        arenaSize += word.length();
+        size++;
+    }
+
+    /**
+     * Removes 1 from the existing count for word. If word is not present,
+     * does nothing. If its count reaches 0, the word is removed.
+     */
+    public void decrementCount(String word) {
+        int slot = find(word, hash(word));
+        if (offsets[slot] < 0) {
+            return;
+        }
+        counts[slot]--;
+        if (counts[slot] == 0) {
+            deadChars += lengths[slot];
+            removeSlot(slot);
+            size--;
+            if (deadChars > arenaSize - deadChars && deadChars > 1024) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Empties the slot and moves back the entries after it in the probe
+     * run that would no longer be found past the gap
+     */
+    private void removeSlot(int slot) {
+        int mask = offsets.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (offsets[next] >= 0) {
+            int home = hashes[next] & mask;
+            // the entry can fill the gap unless its home slot lies
+            // cyclically after the gap and at or before its own slot
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                offsets[gap] = offsets[next];
+                lengths[gap] = lengths[next];
+                hashes[gap] = hashes[next];
+                counts[gap] = counts[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        offsets[gap] = -1;
+    }
+
+    /**
+     * Moves the entries into a table with the given number of slots
+     */
+    private void rehash(int capacity) {
+        int[] oldOffsets = offsets;
+        int[] oldLengths = lengths;
+        int[] oldHashes = hashes;
+        int[] oldCounts = counts;
+        allocateTable(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldOffsets.length; i++) {
+            if (oldOffsets[i] >= 0) {
+                int slot = oldHashes[i] & mask;
+                while (offsets[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                offsets[slot] = oldOffsets[i];
+                lengths[slot] = oldLengths[i];
+                hashes[slot] = oldHashes[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Copies the characters of the stored words into a new arena, dropping
+     * those of removed words
+     */
+    private void compact() {
+        char[] newArena = new char[Math.max(arenaSize - deadChars, 64) * 2];
+        int newSize = 0;
+        for (int slot = 0; slot < offsets.length; slot++) {
+            if (offsets[slot] >= 0) {
+                System.arraycopy(arena, offsets[slot], newArena, newSize, lengths[slot]);
+                offsets[slot] = newSize;
+                newSize += lengths[slot];
+            }
+        }
+        arena = newArena;
+        arenaSize = newSize;
+        deadChars = 0;
+    }
+
+    /**
+     * Returns true if word is stored with a count greater than 0
+     */
+    public boolean contains(String word) {
+        return getCount(word) > 0;
+    }
+
+    /**
+     * Returns the count of word, or -1 if word is not in the map
+     */
+    public int getCount(String word) {
+        int slot = find(word, hash(word));
+        if (offsets[slot] < 0) {
+            return -1;
+        }
+        return counts[slot];
+    }
+
+    /**
+     * Returns the number of distinct words stored
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a list of WordCount objects, one per word stored, sorted in
+     * decreasing order by count with ties broken by word
+     */
+    public List<WordCount> getWordCountsByCount() {
+        return getWordCountTable().toList();
+    }
+
+    /**
+     * Returns the first numWords entries of getWordCountsByCount(). When
+     * numWords is much smaller than the number of words only those are
+     * sorted.
+     */
+    public List<WordCount> getWordCountsByCount(int numWords) {
+        if (Quicksort.prefersTopN(numWords, size)) {
+            return new ArrayList<WordCount>(Arrays.asList(Quicksort.topN(toArray(), numWords)));
+        }
+        return getWordCountTable().toList(numWords);
+    }
+
+    /**
+     * Returns a WordCount for each stored word, in table order
+     */
+    private WordCount[] toArray() {
+        WordCount[] result = new WordCount[size];
+        int i = 0;
+        for (int slot = 0; slot < offsets.length; slot++) {
+            if (offsets[slot] >= 0) {
+                result[i] = new WordCount(new String(arena, offsets[slot], lengths[slot]), counts[slot]);
+                i++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the words and their counts as a WordCountTable ranked in
+     * decreasing order by count with ties broken by word. The words are
+     * copied straight from the arena.
+     */
+    public WordCountTable getWordCountTable() {
+        WordCountTable table = new WordCountTable(Math.max(size, 1), Math.max(arenaSize - deadChars, 1));
+        for (int slot = 0; slot < offsets.length; slot++) {
+            if (offsets[slot] >= 0) {
+                table.add(arena, offsets[slot], lengths[slot], counts[slot]);
+            }
+        }
+        table.sortByRank();
+        return table;
+    }
+
+    /**
+     * Returns an estimate of the number of bytes of heap retained: the
+     * arena and the four int arrays of the table
+     */
+    public long getEstimatedBytes() {
+        return 16 + 2L * arena.length + 4 * (16 + 4L * offsets.length);
+    }
+
+    /**
+     * Counts a seeded Zipf stream with both backends and checks that they
+     * agree, including after removing some of the words again
+     */
+    public static void main(String[] args) {
+        CorpusGenerator generator = new CorpusGenerator(50000, 1.0, "english", 0,
+                                                        new ArrayList<String>(), 3);
+        String[] tokens = new String[500000];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = generator.nextWord();
+        }
+        WordCountStore trie = new WordCountMap();
+        WordCountStore hash = new WordCountHashMap();
+        for (String token : tokens) {
+            trie.incrementCount(token);
+            hash.incrementCount(token);
+        }
+        for (int i = 0; i < tokens.length; i += 2) {
+            trie.decrementCount(tokens[i]);
+            hash.decrementCount(tokens[i]);
+        }
+
+        List<WordCount> expected = trie.getWordCountsByCount();
+        List<WordCount> actual = hash.getWordCountsByCount();
+        WordCountTable table = hash.getWordCountTable();
+        boolean same = expected.size() == actual.size() && expected.size() == table.size();
+        for (int i = 0; same && i < expected.size(); i++) {
+            same = expected.get(i).getWord().equals(actual.get(i).getWord())
+                   && expected.get(i).getCount() == actual.get(i).getCount()
+                   && expected.get(i).getWord().equals(table.getWord(i))
+                   && expected.get(i).getCount() == table.getCount(i);
+        }
+        System.out.println("Words after removing every other token: " + hash.size()
+                           + " (trie " + trie.size() + ")");
+        System.out.println("Same ranking as the trie: " + same);
+        System.out.println("Count of \"" + tokens[1] + "\": " + hash.getCount(tokens[1])
+                           + " (trie " + trie.getCount(tokens[1]) + ")");
+        System.out.println("Estimated bytes: " + hash.getEstimatedBytes()
+                           + " (trie " + trie.getEstimatedBytes() + ")");
+    }
+}
@@ -1,9 +1,15 @@
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
 import java.util.Iterator;
 import java.util.Stack;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 /**
  * This class uses a tree structure to store words and their counts in 
  * a given input
@@ -11,9 +17,42 @@ import java.util.Stack;
  * @author: Yitong Chen
  * @reference: Anna Rafferty
  */
-public class WordCountMap {
+public class WordCountMap implements WordCountStore {
+    // the ranked snapshots are patched on the next query if at most this
+    // many distinct words changed since they were taken, and dropped if more
+    private static final int MAX_PATCHED_WORDS = 64;
+    
     /** Creates a root node of the tree*/
     private Node root;
+    // the number of words with a count above 0
+    private int size;
+    // the number of nodes created since the map was constructed
+    private long nodesCreated;
+    // the number of nodes currently in the tree, including the root
+    private int nodeCount;
+    // childrenHistogram[k] is the number of nodes with k children
+    private int[] childrenHistogram;
+    // depthHistogram[d] is the number of nodes d characters below the root
+    private int[] depthHistogram;
+    // the largest d with depthHistogram[d] > 0
+    private int maxDepth;
+    // the number of changes made to the counts so far
+    private long modCount;
+    // all the words ranked by count at version snapshotVersion, or null
+    private WordCount[] rankedSnapshot;
+    // the top ranked words at version snapshotVersion, or null; every word
+    // not in it ranks below its last entry
+    private WordCount[] topSnapshot;
+    // the modCount the snapshots were taken or last patched at
+    private long snapshotVersion;
+    // the words changed since snapshotVersion, with their counts at that
+    // version (0 for words that were not stored)
+    private Map<String, Integer> changedWords;
+    
+    // estimated sizes in bytes, assuming a 64-bit JVM with compressed 
+    // references: a Node, its CharCount, the one-character String with
+    // its byte array, and the children ArrayList without its array
+    private static final int NODE_BYTES = 24 + 24 + 24 + 24 + 24;
     
     /**
      * Constructs an empty WordCountMap.
@@ -21,6 +60,17 @@ public class WordCountMap {
      */         
     public WordCountMap() {
         root = new Node();
+        size = 0;
+        nodesCreated = 0;
+        nodeCount = 1;
+        childrenHistogram = new int[8];
+        childrenHistogram[0] = 1;
+        depthHistogram = new int[16];
+        depthHistogram[0] = 1;
+        maxDepth = 0;
+        modCount = 0;
+        snapshotVersion = 0;
+        changedWords = new HashMap<String, Integer>();
     }
 
     /**
@@ -30,190 +80,207 @@ public class WordCountMap {
      * @param the new word
      */
     public void incrementCount(String word) {
-        if (word.length() > 0) {
-            // create a list of all the characters in the given word
-            List<String> wordList = transformStringToList(word);
-            incrementCount(wordList, root);
+        incrementCount(word, 1);
+    }
+    
+    /**
+     * Adds amount to the existing count for word, or adds word to the 
+     * WordCountMap with a count of amount if it was not already present.
+     * Adding an empty string is not allowed.
+     * @param the word
+     * @param the amount to add, at least 1
+     */
+    public void incrementCount(String word, int amount) {
+        if (word.length() > 0 && amount > 0) {
+            incrementCount(word, root, 0, amount);
+            modCount++;
         }
     }
 
     /**
-     * Adds 1 to the existing count for word, or adds word to the WordCountMap
-     * with a count of 1 if it was not already present.
-     * @param a list of the characters in the target word
+     * Adds amount to the existing count for word, or adds word to the 
+     * WordCountMap with a count of amount if it was not already present.
+     * @param the target word
      * @rootNode the rootNode of the current sub-tree
+     * @param the depth of the rootNode in the tree, which is also the 
+     * index of the next character of the word
+     * @param the amount to add
      */
-    private void incrementCount(List<String> word, Node rootNode) {
+    private void incrementCount(String word, Node rootNode, int depth, int amount) {
         
-        if (!word.isEmpty()) {
-            // get the children of the current root node
-            List<Node> children = rootNode.children;
+        if (depth < word.length()) {
+            // find the node of the next character
+            Node newRoot = findChild(rootNode, word.charAt(depth));
             
-            // if the current root node is a leaf, the given word
-            // is not in the list and thus we add the word to the list
-            if (children.isEmpty()) {
-                createNewWord(word, rootNode);
+            // if there is none, the given word is not in the list
+            // and thus we add the word to the list
+            if (newRoot == null) {
+                createNewWord(word, rootNode, depth, amount);
             } else {
-                String character = word.remove(0);
-                Node newRoot = null;
-                
-                for (Node child : children) {
-                    if (child.data.getWord().equals(character)) {
-                        newRoot = child;
-                    }
-                }
-                
-                if (newRoot == null) {
-                    word.add(0, character);
-                    createNewWord(word, rootNode);
-                } else {
-                    incrementCount(word, newRoot);
-                }
+                incrementCount(word, newRoot, depth + 1, amount);
             }
         } else {
-            rootNode.data.incrementCount();
+            recordChange(word, rootNode.data.getCount());
+            rootNode.data.incrementCount(amount);
+            if (rootNode.data.getCount() == amount) {
+                size++;
+            }
         }
     }
     
     /**
-     * Adds a new word to the list with a count 1;
-     * @param a list of the remaining characters of the new word
+     * Adds a new word to the list with a count of amount;
+     * @param the new word
      * @param the current parent node
+     * @param the depth of the parent node in the tree, which is also the 
+     * index of the first character of the word not in the tree
+     * @param the count of the new word
      */
-    private void createNewWord(List<String> word, Node rootNode) {
-        if (!word.isEmpty()) {
-            String curWord = word.remove(0);
+    private void createNewWord(String word, Node rootNode, int depth, int amount) {
+        if (depth < word.length()) {
             // creates a new node with the next character in the word
-            Node newNode = new Node(curWord);
+            Node newNode = new Node(word.substring(depth, depth + 1));
+            nodesCreated++;
             // adds the new node as a children of the current parent node
-            rootNode.children.add(newNode);
+            addChild(rootNode, newNode);
+            nodeAdded(rootNode, depth + 1);
             // keep calling createword until all the remaining characters 
             // has been added to the tree
-            createNewWord(word, newNode);
+            createNewWord(word, newNode, depth + 1, amount);
         } else {
             // the word has been added to the tree
-            // increment the count of the word by one
-            rootNode.data.incrementCount();
+            // increment the count of the word by amount
+            recordChange(word, 0);
+            rootNode.data.incrementCount(amount);
+            if (rootNode.data.getCount() == amount) {
+                size++;
+            }
         }
     }
     
     /**
-     * Remove 1 to the existing count for word. If word is not present, does
-     * nothing. If word is present and this decreases its count to 0, removes
-     * any nodes in the tree that are no longer necessary to represent the
-     * remaining words.
+     * Returns the child of the node that holds the given character, or 
+     * null if there is none. Walks the children by index, so no iterator 
+     * or String is created for the lookup.
      */
-    public void decrementCount(String word) {
-        boolean contains = contains(word);
-        
-        // Process the word if it is in the tree
-        if (contains) {
-            // create two queues that contain all the characters of the word
-            Queue<String> wordQueue = transformStringToQueue(word);
-            Queue<String> wordQueue1 = transformStringToQueue(word);
-            
-            // call the helper method, get the count ater decrementation
-            int afterDecrementation = decrementCount(wordQueue, root);
-            
-            // remove the unused nodes
-            if (afterDecrementation == 0) {
-                removeUnused(wordQueue1, root);
-            } 
+    private Node findChild(Node rootNode, char character) {
+        List<Node> children = rootNode.children;
+        for (int i = 0; i < children.size(); i++) {
+            Node child = children.get(i);
+            if (child.data.getWord().charAt(0) == character) {
+                return child;
+            }
         }
+        return null;
     }
-
-
+    
     /**
-     * Remove 1 to the existing count for a word.
-     * @param the queue of all the characters in the word
-     * @param the rootnode of the current subtree
-     * @return the count of the target word after decrementation
+     * Adds a child node to the parent node, keeping the children in 
+     * alphabetical order so that traversals visit the words in order
+     * @param the parent node
+     * @param the new child node
      */
-    private int decrementCount(Queue<String> wordQueue, Node rootNode) {
-        // keep iterating until reaching the last character
-        if (!wordQueue.isEmpty()) {
-            // get the children of the current rootnode
-            List<Node> children = rootNode.children;
-            
-            Node targetNode= null;
-            
-            String word = wordQueue.remove();
-            
-            // find the node of the next character
-            for (Node child : children) {
-                if (child.data.getWord().equals(word)) {
-                    targetNode = child;
-                }
-            }
-            // targetNode is guaranteed to be not null at this point
-            // because there is we know this target word is stored in the map
-            return decrementCount(wordQueue, targetNode);
-        } else {
-            // decrement count on the node of the last character
-            rootNode.data.decrementCount();
-            return rootNode.data.getCount();
+    private void addChild(Node rootNode, Node newNode) {
+        List<Node> children = rootNode.children;
+        int index = children.size();
+        while (index > 0 && children.get(index - 1).data.getWord()
+                   .compareTo(newNode.data.getWord()) > 0) {
+            index--;
         }
+        children.add(index, newNode);
     }
     
     /**
-     * Removes the unused nodes
-     * @param a list of all the characters in the target word
-     * @param the rootnode of the current subtree
+     * Updates the node statistics after a leaf was added below parent
+     * @param the parent node, which already holds the new child
+     * @param the depth of the new node
      */
-    private void removeUnused(Queue<String> wordList, Node rootNode) {
-        // keep iterating until reaching the last character
-        if (!rootNode.children.isEmpty()) {
+    private void nodeAdded(Node parent, int depth) {
+        int children = parent.children.size();
+        if (children >= childrenHistogram.length) {
+            childrenHistogram = Arrays.copyOf(childrenHistogram, children * 2);
+        }
+        childrenHistogram[children - 1]--;
+        childrenHistogram[children]++;
+        // the new node itself has no children
+        childrenHistogram[0]++;
+        
+        if (depth >= depthHistogram.length) {
+            depthHistogram = Arrays.copyOf(depthHistogram, depth * 2);
+        }
+        depthHistogram[depth]++;
+        maxDepth = Math.max(maxDepth, depth);
+        nodeCount++;
+    }
     
-            List<Node> children = rootNode.children;
-            
-            Node targetNode = null;
-            
-            String word = wordList.remove();
-            
-            // find the node of the next character 
-            for (Node child : children) {
-                if (child.data.getWord().equals(word)) {
-                    targetNode = child;
-                }
-            }
-            // targetNode is guaranteed to be not null at this point
-            // because there is we know this target word is stored in the map
-            removeUnused(wordList, targetNode);
-            
-            // going from bottom-up, clearing the children of each unused nodes
-            if (!isUseful(rootNode)) {
-                rootNode.children.clear();
-            }
-        } 
+    /**
+     * Updates the node statistics after a leaf was removed from parent
+     * @param the parent node, which no longer holds the child
+     * @param the depth of the removed node
+     */
+    private void nodeRemoved(Node parent, int depth) {
+        int children = parent.children.size();
+        childrenHistogram[children + 1]--;
+        childrenHistogram[children]++;
+        childrenHistogram[0]--;
+        
+        depthHistogram[depth]--;
+        while (maxDepth > 0 && depthHistogram[maxDepth] == 0) {
+            maxDepth--;
+        }
+        nodeCount--;
     }
     
     /**
-     * Tells whether the node is still useful by looking at its descendants
-     * @param the targetNode
-     * @return true if the node is still useful
-     *         false if the node is no longer useful
+     * Remove 1 to the existing count for word. If word is not present, does
+     * nothing. If word is present and this decreases its count to 0, removes
+     * any nodes in the tree that are no longer necessary to represent the
+     * remaining words.
      */
-    private boolean isUseful(Node rootNode) {
-        // keep iterating until reaching a leaf
-        if (!rootNode.children.isEmpty()) {
-            boolean result = false;
-            for (Node child : rootNode.children) {
-                // if there is one useful child, then the node is useful
-                if (child.data.getCount() > 0) {
-                    result = true;
-                } else {
-                    result = isUseful(child);
-                }
-            }
-            return result;
-        } else {
-            // if reaching a zero-count leaf, the node is no longer useful
-            if (rootNode.data.getCount() == 0) {
+    public void decrementCount(String word) {
+        decrementCount(word, root, 0);
+    }
+
+
+    /**
+     * Remove 1 to the existing count for a word, in a single walk down the
+     * path of the word. Going back up, every node that is left with a count
+     * of 0 and no children is removed from its parent.
+     * @param the target word
+     * @param the rootnode of the current subtree
+     * @param the depth of the rootnode in the tree, which is also the 
+     * index of the next character of the word
+     * @return true if the word was found and its count decremented
+     */
+    private boolean decrementCount(String word, Node rootNode, int depth) {
+        // keep iterating until reaching the last character
+        if (depth < word.length()) {
+            // find the node of the next character
+            Node targetNode = findChild(rootNode, word.charAt(depth));
+            if (targetNode == null || !decrementCount(word, targetNode, depth + 1)) {
                 return false;
-            } else {
-                return true;
             }
+            
+            // going from bottom-up, removing the nodes that no longer
+            // lead to any word
+            if (targetNode.data.getCount() == 0 && targetNode.children.isEmpty()) {
+                rootNode.children.remove(targetNode);
+                nodeRemoved(rootNode, depth + 1);
+            }
+            return true;
+        }
+        // decrement count on the node of the last character
+        int count = rootNode.data.getCount();
+        if (count <= 0) {
+            return false;
+        }
+        recordChange(word, count);
+        modCount++;
+        rootNode.data.decrementCount();
+        if (count == 1) {
+            size--;
         }
+        return true;
     }
     
     /**
@@ -233,100 +300,246 @@ public class WordCountMap {
      * Returns the count of word, or -1 if word is not in the WordCountMap.
      */
     public int getCount(String word) {
-        // create a queue to store all the characters in the given word
-        Queue<String> wordList = transformStringToQueue(word);
-        
-        int result = getCount(wordList, root);
-        
-        return result;
-        
+        return getCount(word, root, 0);
     }
     
     /**
      * returns the count of word, or -1 if word is not in the WordCountMap
+     * @param the target word
+     * @param the rootnode of the current subtree
+     * @param the depth of the rootnode in the tree, which is also the 
+     * index of the next character of the word
      */
-    private int getCount(Queue<String> wordList, Node rootNode) {
-        if (wordList.isEmpty()) {
+    private int getCount(String word, Node rootNode, int depth) {
+        if (depth == word.length()) {
             // return the count of the last character
             return rootNode.data.getCount();
         } else {
-        	List<Node> children = rootNode.children;
-            
-            // still have remaining characters but we have reached a 
-            // leaf node, so the word is not in the map
-            if (children.isEmpty()) {
-                return -1;
+            // finds the node of the next character
+            Node nextRoot = findChild(rootNode, word.charAt(depth));
+            // if cannot find the node of the next character
+            // the word is not in the map
+            if (nextRoot != null) {
+                return getCount(word, nextRoot, depth + 1);
             } else {
-                String target = wordList.remove();
-            	Node nextRoot = null;
-            	// finds the node of the next character
-                for (Node child : children) {
-                    if (child.data.getWord().equals(target)) {
-                    	nextRoot = child;
-                    }
-                }
-                // if cannot find the node of the next character
-                // the word is not in the map
-                if (nextRoot != null) {
-                	return getCount(wordList, nextRoot);
-                } else {
-                	return -1;
-                }
+                return -1;
+            }
+        }
+    }
+
+    /** 
+     * Returns a list of WordCount objects, one per word stored in this 
+     * WordCountMap, sorted in decreasing order by count. The list is the
+     * unmodifiable ranked snapshot, so nothing is copied; a caller that
+     * wants to change it must copy it.
+     */
+    public List<WordCount> getWordCountsByCount() {
+        return getRankedSnapshot();
+    }
+    
+    /** 
+     * Returns a list of the numWords WordCount objects with the largest 
+     * counts, sorted in decreasing order by count. This is the same as the
+     * first numWords entries of getWordCountsByCount(), but when numWords is
+     * much smaller than the number of words only those are sorted. The list
+     * is the unmodifiable ranked snapshot, as for getWordCountsByCount().
+     */
+    public List<WordCount> getWordCountsByCount(int numWords) {
+        return getRankedSnapshot(numWords);
+    }
+    
+    /**
+     * Returns all the words ranked as getWordCountsByCount(), as an
+     * unmodifiable snapshot. The ranking is cached: asking again with no
+     * change in between takes constant time, and after a few changes the
+     * cached ranking is patched instead of recomputed.
+     */
+    public List<WordCount> getRankedSnapshot() {
+        refreshSnapshots();
+        if (rankedSnapshot == null) {
+            List<WordCount> words = new ArrayList<WordCount>();
+            getWordCounts(words, root, root.data.getWord());
+            // the words are collected in alphabetical order, so the stable
+            // count sort breaks ties by word
+            rankedSnapshot = words.toArray(new WordCount[words.size()]);
+            Quicksort.countSort(rankedSnapshot);
+            // the full ranking answers the top-N queries too
+            topSnapshot = null;
+        }
+        return Collections.unmodifiableList(Arrays.asList(rankedSnapshot));
+    }
+    
+    /**
+     * Returns the numWords top ranked words as getWordCountsByCount(int),
+     * as an unmodifiable snapshot cached like getRankedSnapshot()
+     */
+    public List<WordCount> getRankedSnapshot(int numWords) {
+        int length = Math.min(Math.max(numWords, 0), size);
+        if (length == 0) {
+            return Collections.emptyList();
+        }
+        refreshSnapshots();
+        if (rankedSnapshot != null) {
+            return getRankedSnapshot().subList(0, length);
+        }
+        if (topSnapshot == null || topSnapshot.length < length) {
+            if (!Quicksort.prefersTopN(length, size)) {
+                return getRankedSnapshot().subList(0, length);
             }
+            List<WordCount> words = new ArrayList<WordCount>();
+            getWordCounts(words, root, root.data.getWord());
+            topSnapshot = Quicksort.topN(words.toArray(new WordCount[words.size()]), length);
         }
+        return Collections.unmodifiableList(Arrays.asList(topSnapshot).subList(0, length));
     }
     
     /**
-     * Retrieves each character of a string and make it into a queue
-     * @param the word string
-     * @return an queue of characters in the string
+     * Records the count of word before its first change since the snapshots
+     * were taken, or drops the snapshots if too many words have changed
+     * @param the word about to change
+     * @param its count before the change, found on the walk that changes it
      */
-    private Queue<String> transformStringToQueue(String word) {
-        Queue<String> result = new LinkedList<String>();
-        for (int i = 0; i < word.length(); i ++) {
-            result.add(word.substring(i, i + 1));
+    private void recordChange(String word, int count) {
+        if ((rankedSnapshot == null && topSnapshot == null) || changedWords.containsKey(word)) {
+            return;
+        }
+        if (changedWords.size() >= MAX_PATCHED_WORDS) {
+            dropSnapshots();
+        } else {
+            changedWords.put(word, count);
         }
-        return result;
     }
     
     /**
-     * Retrieves each character of a string and make it into a list
-     * @param the word string
-     * @return a list of characters in the string
+     * Forgets the ranked snapshots and the changed words
      */
-    private List<String> transformStringToList(String word) {
-        List<String> result = new ArrayList<String>();
-        for (int i = 0; i < word.length(); i ++) {
-            result.add(word.substring(i, i + 1));
+    private void dropSnapshots() {
+        rankedSnapshot = null;
+        topSnapshot = null;
+        changedWords.clear();
+    }
+    
+    /**
+     * Brings the snapshots up to the current version by patching in the
+     * changed words
+     */
+    private void refreshSnapshots() {
+        if (snapshotVersion == modCount) {
+            return;
+        }
+        if (rankedSnapshot != null) {
+            rankedSnapshot = patch(rankedSnapshot, false);
+        }
+        if (topSnapshot != null) {
+            topSnapshot = patch(topSnapshot, true);
+            if (topSnapshot.length == 0) {
+                topSnapshot = null;
+            }
         }
-        return result;
+        changedWords.clear();
+        snapshotVersion = modCount;
     }
-
-    /** 
-     * Returns a list of WordCount objects, one per word stored in this 
-     * WordCountMap, sorted in decreasing order by count. 
+    
+    /**
+     * Returns a snapshot with the old entries of the changed words taken
+     * out and their current counts merged in, in rank order. The old
+     * entries are found by binary search with the recorded counts.
+     * @param the snapshot at snapshotVersion
+     * @param whether the snapshot is only the top of the ranking, in which
+     * case the result ends at the old last entry: words beyond it may rank
+     * higher than the changed words merged in after it
      */
-    public List<WordCount> getWordCountsByCount() {
-        List<WordCount> words = new ArrayList<WordCount>();
-        getWordCounts(words, root, root.data.getWord());
-        sortList(words);
-        return words;
+    private WordCount[] patch(WordCount[] snapshot, boolean partial) {
+        boolean[] removed = new boolean[snapshot.length];
+        WordCount[] added = new WordCount[changedWords.size()];
+        int numAdded = 0;
+        for (Map.Entry<String, Integer> entry : changedWords.entrySet()) {
+            String word = entry.getKey();
+            if (entry.getValue() > 0) {
+                int index = Arrays.binarySearch(snapshot, new WordCount(word, entry.getValue()),
+                                                Quicksort.RANK_ORDER);
+                if (index >= 0) {
+                    removed[index] = true;
+                }
+            }
+            int count = getCount(word);
+            if (count > 0) {
+                added[numAdded] = new WordCount(word, count);
+                numAdded++;
+            }
+        }
+        // only a few words changed, so a comparison sort beats bucketing
+        // them over the whole range of counts
+        Arrays.sort(added, 0, numAdded, Quicksort.RANK_ORDER);
+        
+        WordCount last = snapshot.length > 0 ? snapshot[snapshot.length - 1] : null;
+        WordCount[] result = new WordCount[snapshot.length + numAdded];
+        int length = 0;
+        int i = 0;
+        int j = 0;
+        while (i < snapshot.length || j < numAdded) {
+            if (i < snapshot.length && removed[i]) {
+                i++;
+                continue;
+            }
+            WordCount next;
+            if (j == numAdded || (i < snapshot.length && Quicksort.RANK_ORDER.compare(snapshot[i], added[j]) < 0)) {
+                next = snapshot[i];
+                i++;
+            } else {
+                next = added[j];
+                j++;
+            }
+            if (partial && (last == null || Quicksort.RANK_ORDER.compare(next, last) > 0)) {
+                break;
+            }
+            result[length] = next;
+            length++;
+        }
+        return Arrays.copyOf(result, length);
+    }
+    
+    /**
+     * Returns the words stored in this WordCountMap and their counts as a 
+     * WordCountTable, ranked in decreasing order by count with ties in 
+     * alphabetical order. The words are copied straight into the table,
+     * so no WordCount object is created per word.
+     */
+    public WordCountTable getWordCountTable() {
+        WordCountTable table = new WordCountTable();
+        getWordCounts(table, root, new StringBuilder());
+        table.sortByCount();
+        return table;
     }
     
     /**
-     * Uses quick sort to sort the word count list in descending order
-     * Sorting the list in place
-     * @param the list to be sorted
+     * Returns the words stored in this WordCountMap and their counts as an
+     * unsorted WordCountTable, in alphabetical order (the order of
+     * String.compareTo)
      */
-    private void sortList(List<WordCount> wordList) {
-        // create an array with all the wordCounts
-        WordCount[] wordArray = wordList.toArray(new WordCount[wordList.size()]);
-        // sort the array
-        Quicksort.quicksort(wordArray);
-        // put the wordCount objects back into the arraylist
-        for (int i = 0; i < wordList.size(); i ++) {
-            wordList.set(i, wordArray[i]);
+    public WordCountTable getWordCountTableByWord() {
+        WordCountTable table = new WordCountTable();
+        getWordCounts(table, root, new StringBuilder());
+        return table;
+    }
+    
+    /**
+     * Adds all the words with a count above 0 in the subtree to the table,
+     * in alphabetical order
+     * @param the result table
+     * @param the root node of the current subtree
+     * @param the characters on the path to the root node of the subtree
+     */
+    private void getWordCounts(WordCountTable table, Node rootNode, StringBuilder curString) {
+        int length = curString.length();
+        curString.append(rootNode.data.getWord());
+        if (rootNode.data.getCount() > 0) {
+            table.add(curString, rootNode.data.getCount());
+        }
+        for (Node child : rootNode.children) {
+            getWordCounts(table, child, curString);
         }
+        curString.setLength(length);
     }
     
     /**
@@ -338,7 +551,7 @@ public class WordCountMap {
      */
     private void getWordCounts(List<WordCount> resultList, Node rootNode, String curString) {
         if (!rootNode.children.isEmpty()) {
-            if (rootNode.data.getCount() != 0) {
+            if (rootNode.data.getCount() > 0) {
                 int count = rootNode.data.getCount();
                 String word = curString + rootNode.data.getWord();
                 WordCount wordCount = new WordCount(word, count);
@@ -350,7 +563,8 @@ public class WordCountMap {
             for (Node child : children) {
                 getWordCounts(resultList, child, curString + rootNode.data.getWord());
             }
-        } else {
+        } else if (rootNode.data.getCount() > 0) {
+            // only the root of an empty tree is a leaf with a count of 0
             int count = rootNode.data.getCount();
             String word = curString + rootNode.data.getWord();
             WordCount wordCount = new WordCount(word, count);
@@ -358,36 +572,113 @@ public class WordCountMap {
         }
     }
 
+    /**
+     * Removes all the words from this WordCountMap, leaving only the root.
+     * The number of nodes created is not reset.
+     */
+    public void clear() {
+        modCount++;
+        dropSnapshots();
+        root = new Node();
+        size = 0;
+        nodeCount = 1;
+        Arrays.fill(childrenHistogram, 0);
+        childrenHistogram[0] = 1;
+        Arrays.fill(depthHistogram, 0);
+        depthHistogram[0] = 1;
+        maxDepth = 0;
+    }
+    
+    /**
+     * Returns the number of distinct words stored in this WordCountMap
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the number of nodes created since this WordCountMap was
+     * constructed, including nodes that have been removed again
+     */
+    public long getNodesCreated() {
+        return nodesCreated;
+    }
+    
     /** 
      * Returns a count of the total number of nodes in the tree.
      * A tree with only a root is a tree with one node; a tree that represents 
      * no words has 1 node (the root).
+     * The count is kept up to date as nodes are added and removed.
      */
     public int getNodeCount() {
-        // increment by 1 because the root itself is not counted
-        int count = getNodeCount(root) + 1;
-        return count;
-     }
+        return nodeCount;
+    }
     
     /**
-     * Returns a count of the number of nodes in the tree
-     * rooted at the given node.
+     * Returns the length of the longest path from the root, which is the
+     * length of the longest word stored
      */
-    private int getNodeCount(Node rootNode) {
-        // keep iterating until reaching a leaf
-        if (!rootNode.children.isEmpty()) {
-            List<Node> children = rootNode.children;
-            
-            int sum = 0;
-            
-            // counting in the nodes in each subtree of the root node
-            for (Node child : children) {
-                sum = sum + 1 + getNodeCount(child);
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+    
+    /**
+     * Returns a histogram of the number of children per node: element k
+     * is the number of nodes that have k children
+     */
+    public int[] getChildrenHistogram() {
+        int length = childrenHistogram.length;
+        while (length > 1 && childrenHistogram[length - 1] == 0) {
+            length--;
+        }
+        return Arrays.copyOf(childrenHistogram, length);
+    }
+    
+    /**
+     * Returns an estimate of the number of bytes of heap retained by the 
+     * tree. Computed from the node count and the children histogram, so it
+     * takes time proportional to the largest number of children of a node.
+     */
+    public long getEstimatedBytes() {
+        long bytes = (long) nodeCount * NODE_BYTES;
+        for (int children = 1; children < childrenHistogram.length; children++) {
+            bytes += (long) childrenHistogram[children] * childrenArrayBytes(children);
+        }
+        return bytes;
+    }
+    
+    /**
+     * Returns the estimated size of the array behind an ArrayList that 
+     * has had the given number of elements added to it
+     */
+    private static long childrenArrayBytes(int children) {
+        // ArrayList starts at 10 elements and grows by half
+        int capacity = 10;
+        while (capacity < children) {
+            capacity = capacity + (capacity >> 1);
+        }
+        // array header plus one compressed reference per element, 
+        // rounded up to 8 bytes
+        return (16 + 4L * capacity + 7) & ~7L;
+    }
+    
+    /**
+     * Registers a WordCountMapStats MBean for this map with the platform
+     * MBean server, under the name wordcloud:type=WordCountMap,name=<name>,
+     * replacing any MBean already registered under that name
+     * @return the name the MBean was registered under
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("wordcloud:type=WordCountMap,name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
             }
-            
-            return sum;
-        } else {
-            return 0;
+            server.registerMBean(new WordCountMapStats(this), objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register the MBean for " + name, e);
         }
     }
     
@@ -482,9 +773,9 @@ public class WordCountMap {
             return count;
         }
         
-        /** increments the count by 1 */
-        private void incrementCount() {
-            count ++;
+        /** increments the count by the given amount */
+        private void incrementCount(int amount) {
+            count += amount;
         }
 
         /** decrements the count by 1 */
@@ -601,5 +892,16 @@ public class WordCountMap {
         System.out.println("The map should differentiate be case-sensitive.");
         System.out.println("Calling getWordCountsByCount() returns: ");
         display(newMap.getWordCountsByCount());
+        System.out.println("-------------------------------");
+        
+        // Tests the cached ranking
+        System.out.println("Calling getRankedSnapshot() twice with no change in between "
+                           + "should return the same snapshot: " 
+                           + newMap.getRankedSnapshot().equals(newMap.getRankedSnapshot()));
+        System.out.println("Adding 'Shaocheng' twice more to the WordCountMap......");
+        newMap.incrementCount("Shaocheng", 2);
+        System.out.println("The patched snapshot should rank 'Shaocheng' first and "
+                           + "getRankedSnapshot(1) returns: ");
+        display(newMap.getRankedSnapshot(1));
     }
 }
\ No newline at end of file
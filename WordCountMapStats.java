@@ -0,0 +1,43 @@
+/**
+ * Standard MBean exposing the statistics of one WordCountMap. Register
+ * it with WordCountMap.registerMBean.
+ *
+ * WordCountMap is not thread-safe, so values read over JMX while the map
+ * is being updated may lag slightly behind the map.
+ * @author: Yitong Chen
+ */
+public class WordCountMapStats implements WordCountMapStatsMBean {
+    // the map whose statistics are exposed
+    private final WordCountMap map;
+
+    /**
+     * Constructs the MBean for the given map
+     */
+    public WordCountMapStats(WordCountMap map) {
+        this.map = map;
+    }
+
+    public int getWordCount() {
+        return map.size();
+    }
+
+    public int getNodeCount() {
+        return map.getNodeCount();
+    }
+
+    public long getNodesCreated() {
+        return map.getNodesCreated();
+    }
+
+    public long getEstimatedBytes() {
+        return map.getEstimatedBytes();
+    }
+
+    public int getMaxDepth() {
+        return map.getMaxDepth();
+    }
+
+    public int[] getChildrenHistogram() {
+        return map.getChildrenHistogram();
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * Management interface for watching the size and shape of a WordCountMap
+ * over JMX. All the attributes are maintained as the map changes, so
+ * reading them does not walk the tree.
+ * @author: Yitong Chen
+ */
+public interface WordCountMapStatsMBean {
+    /** The number of distinct words with a count above 0 */
+    int getWordCount();
+
+    /** The number of nodes in the tree, including the root */
+    int getNodeCount();
+
+    /** The number of nodes created since the map was constructed */
+    long getNodesCreated();
+
+    /** An estimate of the heap retained by the tree, in bytes */
+    long getEstimatedBytes();
+
+    /** The length of the longest word stored */
+    int getMaxDepth();
+
+    /** Element k is the number of nodes that have k children */
+    int[] getChildrenHistogram();
+}
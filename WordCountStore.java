@@ -0,0 +1,60 @@
+import java.util.List;
+
+/**
+ * The operations WordCounter needs from a structure that counts words.
+ * WordCountMap keeps the words in a trie and WordCountHashMap keeps them in
+ * a hash table; either can be chosen with the --backend option.
+ * @author: Yitong Chen
+ */
+public interface WordCountStore {
+    /**
+     * Adds 1 to the existing count for word, or adds word with a count of 1
+     * if it was not already present. Adding an empty string is ignored.
+     */
+    void incrementCount(String word);
+
+    /**
+     * Removes 1 from the existing count for word, removing the word when
+     * its count reaches 0. Does nothing if word is not present.
+     */
+    void decrementCount(String word);
+
+    /**
+     * Returns true if word is stored with a count greater than 0
+     */
+    boolean contains(String word);
+
+    /**
+     * Returns the count of word, or a value below 1 if it is not stored
+     */
+    int getCount(String word);
+
+    /**
+     * Returns the number of distinct words stored
+     */
+    int size();
+
+    /**
+     * Returns a list of WordCount objects, one per word stored, sorted in
+     * decreasing order by count with ties broken by word. The list may be
+     * unmodifiable (WordCountMap returns its cached ranking), so a caller
+     * that changes it must copy it first.
+     */
+    List<WordCount> getWordCountsByCount();
+
+    /**
+     * Returns the first numWords entries of getWordCountsByCount()
+     */
+    List<WordCount> getWordCountsByCount(int numWords);
+
+    /**
+     * Returns the words and their counts as a WordCountTable ranked like
+     * getWordCountsByCount()
+     */
+    WordCountTable getWordCountTable();
+
+    /**
+     * Returns an estimate of the number of bytes of heap retained
+     */
+    long getEstimatedBytes();
+}
@@ -0,0 +1,219 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class stores a list of words and their counts in columns instead of
+ * one WordCount object per word. The characters of all the words share one
+ * char array, and the counts are kept in an int array. The rows are ranked
+ * through an index permutation, so sorting never moves the words themselves.
+ *
+ * Ranks go from 0 (the largest count) to size() - 1.
+ * @author: Yitong Chen
+ */
+public class WordCountTable {
+    // the characters of all the words, one after another
+    private char[] chars;
+    // the word in row i is chars[offsets[i]] to chars[offsets[i + 1] - 1]
+    private int[] offsets;
+    // the count of the word in row i
+    private int[] counts;
+    // the number of rows
+    private int size;
+    // order[rank] is the row with that rank; null until the table is sorted
+    private int[] order;
+
+    /**
+     * Constructs an empty WordCountTable
+     */
+    public WordCountTable() {
+        this(16, 64);
+    }
+
+    /**
+     * Constructs an empty WordCountTable with room for the given number
+     * of words and characters before it has to grow
+     */
+    public WordCountTable(int wordCapacity, int charCapacity) {
+        chars = new char[Math.max(charCapacity, 1)];
+        offsets = new int[Math.max(wordCapacity, 1) + 1];
+        counts = new int[Math.max(wordCapacity, 1)];
+        size = 0;
+    }
+
+    /**
+     * Adds a row for the word made of the given characters.
+     * @param word the array holding the characters of the word
+     * @param start the index of the first character in word
+     * @param length the number of characters in the word
+     * @param count the count of the word
+     */
+    public void add(char[] word, int start, int length, int count) {
+        int end = addRow(length, count);
+        System.arraycopy(word, start, chars, end, length);
+    }
+
+    /**
+     * Adds a row for the given word and count
+     */
+    public void add(CharSequence word, int count) {
+        int end = addRow(word.length(), count);
+        for (int i = 0; i < word.length(); i++) {
+            chars[end + i] = word.charAt(i);
+        }
+    }
+
+    /**
+     * Adds a row with the given count and makes room for a word of the 
+     * given length, growing the arrays if needed.
+     * @return the index in chars where the word should be copied
+     */
+    private int addRow(int length, int count) {
+        int end = offsets[size];
+        if (end + length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, end + length));
+        }
+        if (size == counts.length) {
+            counts = Arrays.copyOf(counts, counts.length * 2);
+            offsets = Arrays.copyOf(offsets, counts.length + 1);
+        }
+        counts[size] = count;
+        size++;
+        offsets[size] = end + length;
+        order = null;
+        return end;
+    }
+
+    /**
+     * Returns the number of words in the table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Ranks the rows in decreasing order by count. Rows with equal counts
+     * keep the order in which they were added.
+     */
+    public void sortByCount() {
+        order = Quicksort.countOrder(counts, size);
+    }
+
+    /**
+     * Ranks the rows in decreasing order by count, with ties broken by
+     * word, whatever order the rows were added in
+     */
+    public void sortByRank() {
+        order = Quicksort.countOrder(counts, size);
+        int[] buffer = new int[size];
+        int start = 0;
+        while (start < size) {
+            int end = start + 1;
+            while (end < size && counts[order[end]] == counts[order[start]]) {
+                end++;
+            }
+            if (end - start > 1) {
+                sortByWord(order, buffer, start, end);
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Merge sorts rows[first] to rows[last - 1] by word
+     */
+    private void sortByWord(int[] rows, int[] buffer, int first, int last) {
+        if (last - first < 2) {
+            return;
+        }
+        int mid = (first + last) >>> 1;
+        sortByWord(rows, buffer, first, mid);
+        sortByWord(rows, buffer, mid, last);
+        if (compareWords(rows[mid - 1], rows[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(rows, first, buffer, first, last - first);
+        int i = first;
+        int j = mid;
+        for (int k = first; k < last; k++) {
+            if (j == last || (i < mid && compareWords(buffer[i], buffer[j]) <= 0)) {
+                rows[k] = buffer[i];
+                i++;
+            } else {
+                rows[k] = buffer[j];
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Compares the words of two rows in the order of String.compareTo
+     */
+    private int compareWords(int rowA, int rowB) {
+        int a = offsets[rowA];
+        int b = offsets[rowB];
+        int lengthA = offsets[rowA + 1] - a;
+        int lengthB = offsets[rowB + 1] - b;
+        int length = Math.min(lengthA, lengthB);
+        for (int i = 0; i < length; i++) {
+            if (chars[a + i] != chars[b + i]) {
+                return chars[a + i] - chars[b + i];
+            }
+        }
+        return lengthA - lengthB;
+    }
+
+    /**
+     * Returns the row with the given rank, or the rank itself if the table
+     * has not been sorted
+     */
+    private int row(int rank) {
+        if (order == null) {
+            return rank;
+        }
+        return order[rank];
+    }
+
+    /**
+     * Gets the count of the word with the given rank
+     */
+    public int getCount(int rank) {
+        return counts[row(rank)];
+    }
+
+    /**
+     * Gets the word with the given rank
+     */
+    public String getWord(int rank) {
+        int row = row(rank);
+        return new String(chars, offsets[row], offsets[row + 1] - offsets[row]);
+    }
+
+    /**
+     * Appends the word with the given rank to a StringBuilder without
+     * creating a String for it
+     */
+    public void appendWord(int rank, StringBuilder builder) {
+        int row = row(rank);
+        builder.append(chars, offsets[row], offsets[row + 1] - offsets[row]);
+    }
+
+    /**
+     * Returns a list of WordCount objects for the first numWords ranks
+     */
+    public List<WordCount> toList(int numWords) {
+        int length = Math.min(Math.max(numWords, 0), size);
+        List<WordCount> result = new ArrayList<WordCount>(length);
+        for (int rank = 0; rank < length; rank++) {
+            result.add(new WordCount(getWord(rank), getCount(rank)));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a list of WordCount objects for all the words, in rank order
+     */
+    public List<WordCount> toList() {
+        return toList(size);
+    }
+}
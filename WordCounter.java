@@ -1,133 +1,708 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.nio.file.WatchService;
 import java.io.PrintWriter;
 /**
  * This class counts the words in a text file and outputs them in some 
  * format as required by the user in the command line
  */
 public class WordCounter {
-    // the list that stores the non-stop words in the file
-    List<String> wordList;
-    // the list that stores all the words in the file
-    List<String> allWordList;
-    // the list that store all the stop words
-    List<String> stopWordList;
+    // the set of all the stop words, filled in by loadStopWords()
+    Set<String> stopWords;
     // the list that stores the WordCount of the non-stop words
     List<WordCount> wordCountList;
     // the list that stores the WordCount of all the words in the file
     List<WordCount> allWordCountList;
+    // the ranked table of the non-stop words, filled in by loadAndProcess()
+    WordCountTable wordCountTable;
+    // the ranked table of all the words, filled in by loadAndProcess()
+    WordCountTable allWordCountTable;
+    // the counts of the non-stop words and of the stop words, filled in
+    // by loadCounts()
+    WordCountStore wordCounts;
+    WordCountStore stopWordCounts;
+    // the phase timings and counters of this run, or null if not collected
+    PipelineStats stats;
+    // whether the word count maps are registered as MBeans
+    boolean registerMBeans;
+    // the structure the words are counted in: "trie" or "hash"
+    String backend;
+    // the size of the chunks read by processWithDeadline, in bytes
+    private static final int DEADLINE_CHUNK_SIZE = 1 << 14;
     
     /** default constructor */
     public WordCounter() {
         // initialize all the instance variables
-        allWordList = new ArrayList<String>();
-        wordList = new ArrayList<String>();
-        stopWordList = new ArrayList<String>();
+        stopWords = new HashSet<String>();
         wordCountList = new ArrayList<WordCount>();
         allWordCountList = new ArrayList<WordCount>();
+        backend = "trie";
     }
     
-    /** 
-     * Reads through the given file and takes the words of the file
-     * one by one, adding them to the corresponding list
+    /**
+     * Reads the stop words into the stop word set, which every loader
+     * looks the words up in
      */
-    public void load(String filePath) {
-        
-        // create a file with the given file path
-        File wordFile = new File(filePath);
+    void loadStopWords() {
         // create a file with the stop words
         // assuming the stopword file exists in the same directory as the class
         File stopWordFile = new File("StopWords.txt");
-        Scanner scanner1 = null;
         Scanner scanner2 = null;
         
         try {
-            scanner1 = new Scanner(wordFile);
             scanner2 = new Scanner(stopWordFile);
         } catch (FileNotFoundException e) {
             System.out.println("File cannot be found!");
         }
         
         // reads through the stop words file and add each stop word into the 
-        // stop word list 
+        // stop word set 
         while (scanner2.hasNext()) {
             String curWord = scanner2.next();
-            stopWordList.add(curWord);
+            stopWords.add(curWord);
+        }
+    }
+    
+    /**
+     * Reads through the given file and counts its words as they are read,
+     * without keeping the words in lists, then fills in the ranked tables
+     * of the non-stop words and of all the words. The stop words are
+     * counted in a small separate store, and the table of all the words is
+     * merged from the two.
+     * @return the number of tokens read
+     */
+    public long loadAndProcess(String filePath) {
+        long tokensRead = loadCounts(filePath);
+        if (wordCounts == null) {
+            return 0;
         }
         
-        // reads through the given text file
-        while (scanner1.hasNext()) {
-            String curWord = scanner1.next().toLowerCase();
-            // normalize the word
-            curWord = format(curWord);
-            // add the word to the all word list
-            allWordList.add(curWord);
-            // if the word is not a stop word, adds it to the
-            // non-stop word list
-            if (!stopWordList.contains(curWord)) {
-                wordList.add(curWord);
+        startPhase("sort");
+        wordCountTable = wordCounts.getWordCountTable();
+        WordCountTable stopWordTable = stopWordCounts.getWordCountTable();
+        allWordCountTable = new WordCountTable(wordCountTable.size() + stopWordTable.size(), 16);
+        StringBuilder word = new StringBuilder();
+        WordCountTable[] tables = {wordCountTable, stopWordTable};
+        for (WordCountTable table : tables) {
+            for (int rank = 0; rank < table.size(); rank++) {
+                word.setLength(0);
+                table.appendWord(rank, word);
+                allWordCountTable.add(word, table.getCount(rank));
             }
         }
+        allWordCountTable.sortByRank();
+        wordCountList = null;
+        allWordCountList = null;
+        return tokensRead;
     }
     
-    /** 
-     * normalize a string
+    /**
+     * Reads through the given file and counts its non-stop words and its
+     * stop words in two stores as they are read, without keeping the words
+     * in lists. Nothing is ranked yet.
+     * @return the number of tokens read
+     */
+    public long loadCounts(String filePath) {
+        startPhase("load");
+        Scanner scanner = null;
+        try {
+            scanner = new Scanner(new File(filePath));
+        } catch (FileNotFoundException e) {
+            System.out.println("File cannot be found!");
+            return 0;
+        }
+        loadStopWords();
+        
+        WordCountStore wordCountMap = createStore("words");
+        WordCountStore stopWordCounts = new WordCountHashMap();
+        long tokensRead = 0;
+        long stopWordsDropped = 0;
+        while (scanner.hasNext()) {
+            String curWord = format(scanner.next().toLowerCase());
+            tokensRead++;
+            if (stopWords.contains(curWord)) {
+                stopWordsDropped++;
+                stopWordCounts.incrementCount(curWord);
+            } else {
+                wordCountMap.incrementCount(curWord);
+            }
+        }
+        scanner.close();
+        
+        if (stats != null) {
+            stats.tokensRead = tokensRead;
+            stats.stopWordsDropped = stopWordsDropped;
+            stats.trieNodesCreated = nodesCreated(wordCountMap);
+            stats.distinctWords = wordCountMap.size();
+        }
+        wordCounts = wordCountMap;
+        this.stopWordCounts = stopWordCounts;
+        return tokensRead;
+    }
+    
+    /**
+     * Returns the words of a cloud of numWords words from the counts read
+     * by loadCounts(), as picked by cloudWords()
+     */
+    public List<WordCount> getCloudWords(int numWords) {
+        startPhase("sort");
+        if (wordCounts == null) {
+            return new ArrayList<WordCount>();
+        }
+        return cloudWords(wordCounts, stopWordCounts, numWords);
+    }
+    
+    /**
+     * Returns the words a cloud of numWords words shows: the numWords top
+     * ranked non-stop words, or, if there are fewer non-stop words than 
+     * that, all the words with the stop words included, ranked together.
+     * Shared by the cloud command and processWithDeadline, so they give
+     * the same cloud for the same counts.
+     */
+    private static List<WordCount> cloudWords(WordCountStore words, WordCountStore stopWordCounts, int numWords) {
+        List<WordCount> topWords = words.getWordCountsByCount(numWords);
+        if (topWords.size() < numWords) {
+            List<WordCount> allWords = new ArrayList<WordCount>(words.getWordCountsByCount());
+            allWords.addAll(stopWordCounts.getWordCountsByCount());
+            WordCount[] allWordArray = allWords.toArray(new WordCount[allWords.size()]);
+            Quicksort.rankSort(allWordArray);
+            topWords = Arrays.asList(allWordArray);
+        }
+        return topWords;
+    }
+    
+    /**
+     * Reads through the given file and counts its non-stop words in an 
+     * ApproximateWordCounter as they are read, without keeping the words
+     * in lists, so memory use does not grow with the input
+     */
+    public void loadApproximate(String filePath, ApproximateWordCounter approximateCounter) {
+        startPhase("load");
+        Scanner scanner = null;
+        try {
+            scanner = new Scanner(new File(filePath));
+        } catch (FileNotFoundException e) {
+            System.out.println("File cannot be found!");
+            return;
+        }
+        loadStopWords();
+        
+        long tokensRead = 0;
+        long stopWordsDropped = 0;
+        while (scanner.hasNext()) {
+            String curWord = format(scanner.next().toLowerCase());
+            tokensRead++;
+            if (stopWords.contains(curWord)) {
+                stopWordsDropped++;
+            } else {
+                approximateCounter.incrementCount(curWord);
+            }
+        }
+        scanner.close();
+        
+        if (stats != null) {
+            stats.tokensRead = tokensRead;
+            stats.stopWordsDropped = stopWordsDropped;
+        }
+    }
+    
+    /**
+     * Reads through the given file and counts its words in an 
+     * ExternalWordCounter as they are read, without keeping the words in
+     * lists, so only the counter's memory budget is used
+     * @param includeStopWords whether stop words are counted too
      */
-    private String format(String originalWord) {
-        boolean done = false;
+    public void loadExternal(String filePath, ExternalWordCounter externalCounter, 
+                             boolean includeStopWords) throws IOException {
+        startPhase("load");
+        Scanner scanner = null;
+        try {
+            scanner = new Scanner(new File(filePath));
+        } catch (FileNotFoundException e) {
+            System.out.println("File cannot be found!");
+            return;
+        }
+        loadStopWords();
         
-        String resultWord = originalWord;
+        long tokensRead = 0;
+        long stopWordsDropped = 0;
+        while (scanner.hasNext()) {
+            String curWord = format(scanner.next().toLowerCase());
+            tokensRead++;
+            if (!includeStopWords && stopWords.contains(curWord)) {
+                stopWordsDropped++;
+            } else {
+                externalCounter.incrementCount(curWord);
+            }
+        }
+        scanner.close();
         
-        // keep looping until all the special characters at
-        // the two ends of the string are removed
-        while (!done) {
-            // keep a record of the length of the word before formatting
-            int lengthBefore = resultWord.length();
-            // remove the first and last special character if there is any
-            resultWord = resultWord.replaceAll("\\W$|^\\W", "");
-            // if the format didn't do anything to the word,
-            // the word should be already formatted so we are done
-            if (resultWord.length() == lengthBefore) {
-                done = true;
+        if (stats != null) {
+            stats.tokensRead = tokensRead;
+            stats.stopWordsDropped = stopWordsDropped;
+            stats.trieNodesCreated = externalCounter.getNodesCreated();
+        }
+    }
+    
+    /**
+     * Reads the non-stop words of a continuous stream into a sliding
+     * window and rewrites the word cloud of the top words in the window
+     * to the output file every renderEvery tokens and every renderInterval
+     * milliseconds, as well as when the stream ends. Renders are only done
+     * as tokens arrive, so an idle stream keeps its last cloud.
+     * @param renderEvery the number of tokens between renders, or 0
+     * @param renderInterval the milliseconds between renders, or 0
+     */
+    public void processWindow(Scanner scanner, SlidingWindowCounter window, int numWords, String title,
+                              String outputFileName, int renderEvery, long renderInterval) {
+        loadStopWords();
+        if (registerMBeans) {
+            window.getWordCountMap().registerMBean("window");
+        }
+        long tokensRead = 0;
+        long stopWordsDropped = 0;
+        long tokensSinceRender = 0;
+        long lastRender = System.currentTimeMillis();
+        while (scanner.hasNext()) {
+            String curWord = format(scanner.next().toLowerCase());
+            long now = System.currentTimeMillis();
+            tokensRead++;
+            if (stopWords.contains(curWord)) {
+                stopWordsDropped++;
+            } else {
+                window.add(curWord, now);
             }
+            tokensSinceRender++;
+            if ((renderEvery > 0 && tokensSinceRender >= renderEvery)
+                || (renderInterval > 0 && now - lastRender >= renderInterval)) {
+                renderWindow(window, numWords, title, outputFileName, now);
+                tokensSinceRender = 0;
+                lastRender = now;
+            }
+        }
+        renderWindow(window, numWords, title, outputFileName, System.currentTimeMillis());
+        
+        if (stats != null) {
+            stats.tokensRead = tokensRead;
+            stats.stopWordsDropped = stopWordsDropped;
+            stats.trieNodesCreated = window.getWordCountMap().getNodesCreated();
+            stats.distinctWords = window.size();
+        }
+    }
+    
+    /**
+     * Writes the word cloud of the top numWords words in the window
+     */
+    private void renderWindow(SlidingWindowCounter window, int numWords, String title, 
+                              String outputFileName, long now) {
+        window.expire(now);
+        String html = WordCloudMaker.getWordCloudHTML(title, window.getWordCountsByCount(numWords));
+        writeToFile(html, outputFileName);
+    }
+    
+    /**
+     * Follows a growing file, counting only what is appended to it, and 
+     * rewrites the word cloud of its top numWords non-stop words whenever 
+     * new words were read. The position and counts are saved to the
+     * checkpoint file every checkpointInterval milliseconds and when the
+     * program exits, and a saved checkpoint is resumed from.
+     * @param once whether to stop after reading what is in the file now
+     */
+    public void follow(String filePath, int numWords, String outputFileName, final File checkpoint,
+                       long checkpointInterval, long pollInterval, boolean once) 
+        throws IOException, InterruptedException {
+        loadStopWords();
+        final FileFollower follower = new FileFollower(Paths.get(filePath), stopWords);
+        if (registerMBeans) {
+            follower.getWordCountMap().registerMBean("follow");
+        }
+        if (follower.loadCheckpoint(checkpoint)) {
+            System.out.println("Resuming " + filePath + " from byte " + follower.getOffset());
+        }
+        
+        follower.poll();
+        renderFollowed(follower, numWords, filePath, outputFileName);
+        follower.saveCheckpoint(checkpoint);
+        if (once) {
+            follower.close();
+            return;
         }
         
-        return resultWord;
+        // save the last position when the program is stopped
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                try {
+                    follower.saveCheckpoint(checkpoint);
+                } catch (IOException e) {
+                    System.out.println("Could not save the checkpoint: " + e.getMessage());
+                }
+            }
+        });
+        WatchService watcher = follower.watch();
+        long lastCheckpoint = System.currentTimeMillis();
+        while (true) {
+            if (follower.waitAndPoll(watcher, pollInterval) > 0) {
+                renderFollowed(follower, numWords, filePath, outputFileName);
+            }
+            if (System.currentTimeMillis() - lastCheckpoint >= checkpointInterval) {
+                follower.saveCheckpoint(checkpoint);
+                lastCheckpoint = System.currentTimeMillis();
+            }
+        }
+    }
+    
+    /**
+     * Writes the word cloud of the top numWords words read by the follower
+     */
+    private void renderFollowed(FileFollower follower, int numWords, String title, String outputFileName) {
+        List<WordCount> topWords = follower.getWordCountMap().getRankedSnapshot(numWords);
+        writeToFile(WordCloudMaker.getWordCloudHTML(title, topWords), outputFileName);
+        if (stats != null) {
+            stats.tokensRead = follower.getTokensRead();
+            stats.stopWordsDropped = follower.getStopWordsDropped();
+            stats.trieNodesCreated = follower.getWordCountMap().getNodesCreated();
+            stats.distinctWords = follower.getWordCountMap().size();
+        }
     }
     
     /**
-     * create word count maps and adds the words into them
+     * Reads through the given file and counts its n-grams in an 
+     * NGramCounter as they are read. Stop words, tokens made only of 
+     * punctuation and the ends of sentences break the runs of words, so no
+     * n-gram contains a stop word or spans two sentences.
      */
-    public void processData() {
-        // create a map that stores the non-stop words
-        // and a map that stores all the words
-        WordCountMap wordCountMap = new WordCountMap();
-        WordCountMap allWordCountMap = new WordCountMap();
+    public void loadNGrams(String filePath, NGramCounter nGramCounter) {
+        startPhase("load");
+        Scanner scanner = null;
+        try {
+            scanner = new Scanner(new File(filePath));
+        } catch (FileNotFoundException e) {
+            System.out.println("File cannot be found!");
+            return;
+        }
+        loadStopWords();
         
-        // adding the non-stop words into the non-stop word map
-        for (String word : wordList) {
-            wordCountMap.incrementCount(word);
+        long tokensRead = 0;
+        long stopWordsDropped = 0;
+        while (scanner.hasNext()) {
+            String token = scanner.next();
+            String curWord = format(token.toLowerCase());
+            tokensRead++;
+            if (stopWords.contains(curWord)) {
+                stopWordsDropped++;
+                nGramCounter.endRun();
+            } else {
+                nGramCounter.addWord(curWord);
+                if (endsSentence(token)) {
+                    nGramCounter.endRun();
+                }
+            }
         }
+        scanner.close();
         
-        // adding all the words into the all word map
-        for (String word : allWordList) {
-            allWordCountMap.incrementCount(word);
+        if (stats != null) {
+            stats.tokensRead = tokensRead;
+            stats.stopWordsDropped = stopWordsDropped;
+            stats.distinctWords = nGramCounter.size();
+        }
+    }
+    
+    /**
+     * Returns true if the token ends a sentence (or a clause, for ';'),
+     * looking past closing brackets and quotes, as in end.) or end."
+     */
+    private static boolean endsSentence(String token) {
+        int i = token.length() - 1;
+        while (i >= 0 && ")]}\"'\u2019\u201d\u00bb".indexOf(token.charAt(i)) >= 0) {
+            i--;
+        }
+        if (i < 0) {
+            return false;
+        }
+        char last = token.charAt(i);
+        return last == '.' || last == '!' || last == '?' || last == ';';
+    }
+    
+    /**
+     * Reads every file in the directory as a document of a TfIdfCorpus and
+     * writes word clouds of the top numWords TF-IDF words to the output 
+     * directory: one per document, or one for the documents named in subset
+     * (comma separated) if it is not null
+     */
+    public void processCorpus(File directory, int numWords, File outputDirectory, String subset, int threads) 
+        throws FileNotFoundException {
+        startPhase("load");
+        loadStopWords();
+        File[] listed = directory.listFiles();
+        if (listed == null) {
+            throw new FileNotFoundException(directory.getPath());
+        }
+        List<File> files = new ArrayList<File>();
+        for (File file : listed) {
+            if (file.isFile()) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        TfIdfCorpus corpus;
+        try {
+            corpus = new TfIdfCorpus(files, stopWords, pool);
+        } finally {
+            pool.shutdown();
+        }
+        if (stats != null) {
+            stats.tokensRead = corpus.getTokensRead();
+            stats.stopWordsDropped = corpus.getStopWordsDropped();
+            stats.distinctWords = corpus.getNumTerms();
         }
         
-        // getting the WordCountList from both maps
-        wordCountList = wordCountMap.getWordCountsByCount();
-        allWordCountList = allWordCountMap.getWordCountsByCount();
+        startPhase("render");
+        outputDirectory.mkdirs();
+        if (subset != null) {
+            String[] names = subset.split(",");
+            int[] documents = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                documents[i] = corpus.indexOf(names[i].trim());
+                if (documents[i] < 0) {
+                    throw new FileNotFoundException(names[i] + " is not in " + directory);
+                }
+            }
+            String html = WordCloudMaker.getWordCloudHTML(subset, corpus.getTopTerms(documents, numWords));
+            writeToFile(html, new File(outputDirectory, "subset.html").getPath());
+        } else {
+            for (int document = 0; document < corpus.getNumDocuments(); document++) {
+                String name = corpus.getName(document);
+                String html = WordCloudMaker.getWordCloudHTML(name, corpus.getTopTerms(document, numWords));
+                writeToFile(html, new File(outputDirectory, name + ".html").getPath());
+            }
+        }
+        System.out.println(corpus.getNumDocuments() + " documents, " + corpus.getNumTerms() + " terms");
+    }
+    
+    /**
+     * Counts the words of the given file until the deadline and writes the
+     * word cloud of the top numWords words seen so far. The file is read in
+     * whitespace aligned chunks, in order or, to count a uniform sample of 
+     * the file, in a random order. Counting stops between two tokens once
+     * the deadline minus the time kept for rendering has passed.
+     * @param deadlineMillis the time allowed for the whole cloud
+     * @param sample whether to read the chunks in a random order
+     * @return the fraction of the bytes of the file that was counted
+     */
+    public double processWithDeadline(String filePath, int numWords, String outputFileName, 
+                                      long deadlineMillis, boolean sample, long seed) throws IOException {
+        long start = System.nanoTime();
+        // keep a fifth of the time, up to 200 ms, for sorting and rendering
+        long reserve = Math.min(deadlineMillis / 5, 200);
+        long stopAt = start + (deadlineMillis - reserve) * 1000000L;
+        
+        startPhase("load");
+        loadStopWords();
+        WordCountStore words = createStore("words");
+        // stop words are kept apart, for when there are too few other words
+        WordCountStore stopWordCounts = new WordCountHashMap();
+        
+        ChunkedReader reader = new ChunkedReader(new File(filePath), DEADLINE_CHUNK_SIZE);
+        int numChunks = reader.getNumChunks();
+        int[] chunks = new int[numChunks];
+        for (int i = 0; i < numChunks; i++) {
+            chunks[i] = i;
+        }
+        if (sample) {
+            Random random = new Random(seed);
+            for (int k = numChunks; k > 1; k--) {
+                int swap = random.nextInt(k);
+                int temp = chunks[k - 1];
+                chunks[k - 1] = chunks[swap];
+                chunks[swap] = temp;
+            }
+        }
+        
+        double bytesCovered = 0;
+        long tokensRead = 0;
+        long stopWordsDropped = 0;
+        int chunksRead = 0;
+        boolean timeUp = false;
+        try {
+            while (chunksRead < numChunks && !timeUp) {
+                String text = reader.readChunk(chunks[chunksRead]);
+                int i = 0;
+                while (i < text.length()) {
+                    if ((tokensRead & 255) == 0 && System.nanoTime() >= stopAt) {
+                        timeUp = true;
+                        break;
+                    }
+                    while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                        i++;
+                    }
+                    int tokenStart = i;
+                    while (i < text.length() && !Character.isWhitespace(text.charAt(i))) {
+                        i++;
+                    }
+                    if (i > tokenStart) {
+                        String curWord = format(text.substring(tokenStart, i).toLowerCase());
+                        tokensRead++;
+                        if (stopWords.contains(curWord)) {
+                            stopWordsDropped++;
+                            stopWordCounts.incrementCount(curWord);
+                        } else {
+                            words.incrementCount(curWord);
+                        }
+                    }
+                }
+                long chunkBytes = reader.getChunkBytes(chunks[chunksRead]);
+                if (timeUp && text.length() > 0) {
+                    bytesCovered += (double) chunkBytes * i / text.length();
+                } else {
+                    bytesCovered += chunkBytes;
+                    chunksRead++;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        if (stats != null) {
+            stats.tokensRead = tokensRead;
+            stats.stopWordsDropped = stopWordsDropped;
+            stats.trieNodesCreated = nodesCreated(words);
+            stats.distinctWords = words.size();
+        }
+        
+        startPhase("sort");
+        List<WordCount> topWords = cloudWords(words, stopWordCounts, numWords);
+        startPhase("render");
+        String html = WordCloudMaker.getWordCloudHTML(filePath, topWords);
+        startPhase("write");
+        writeToFile(html, outputFileName);
+        
+        double coverage = reader.getSize() == 0 ? 1 : bytesCovered / reader.getSize();
+        System.out.printf("Covered %.1f%% of the input (%d of %d chunks%s) in %d ms%n", coverage * 100,
+                          chunksRead, numChunks, sample ? ", sampled" : "", 
+                          (System.nanoTime() - start) / 1000000);
+        return coverage;
+    }
+    
+    /** 
+     * normalize a string: removes the special characters (anything but
+     * a letter, a digit or '_', as the regex \W) from the two ends.
+     * Returns the same string when there is nothing to remove, so a token
+     * that is already clean costs no allocation.
+     */
+    static String format(String originalWord) {
+        int start = 0;
+        int end = originalWord.length();
+        while (start < end && !isWordCharacter(originalWord.charAt(start))) {
+            start++;
+        }
+        while (end > start && !isWordCharacter(originalWord.charAt(end - 1))) {
+            end--;
+        }
+        // substring returns the string itself when it covers all of it
+        return originalWord.substring(start, end);
+    }
+    
+    /**
+     * Returns true if c is a letter, a digit or '_' in ASCII, the
+     * characters the regex \w matches
+     */
+    private static boolean isWordCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+    
+    /**
+     * Creates an empty WordCountStore of the selected backend. A trie is 
+     * registered as an MBean with the given name if MBeans were asked for.
+     */
+    WordCountStore createStore(String name) {
+        if (backend.equals("hash")) {
+            return new WordCountHashMap();
+        } else if (backend.equals("trie")) {
+            WordCountMap map = new WordCountMap();
+            if (registerMBeans) {
+                map.registerMBean(name);
+            }
+            return map;
+        }
+        throw new IllegalArgumentException("Unknown backend: " + backend);
+    }
+    
+    /**
+     * Returns the number of trie nodes created by the store, which is 0 if
+     * it is not a trie
+     */
+    private static long nodesCreated(WordCountStore store) {
+        if (store instanceof WordCountMap) {
+            return ((WordCountMap) store).getNodesCreated();
+        }
+        return 0;
+    }
+    
+    /**
+     * Sets the structure the words are counted in, "trie" (a 
+     * WordCountMap, the default) or "hash" (a WordCountHashMap)
+     */
+    public void setBackend(String backend) {
+        this.backend = backend;
+    }
+    
+    /**
+     * Starts timing the named phase if statistics are being collected
+     */
+    void startPhase(String name) {
+        if (stats != null) {
+            stats.startPhase(name);
+        }
+    }
+    
+    /**
+     * Sets whether the word count maps are registered as WordCountMapStats
+     * MBeans: "words" for the map of the non-stop words of byCount and cloud,
+     * "window" for the map of processWindow and "follow" for that of follow
+     */
+    public void setRegisterMBeans(boolean registerMBeans) {
+        this.registerMBeans = registerMBeans;
+    }
+    
+    /**
+     * Sets where the phase timings and counters of this run are collected;
+     * null turns the collection off
+     */
+    public void setStats(PipelineStats stats) {
+        this.stats = stats;
     }
     
     /**
      * Displays the Word and its count to the user
      */
     public void display() {
-        for (WordCount word : wordCountList) {
-            System.out.println(word.getWord() + ":" + word.getCount());
+        startPhase("display");
+        if (wordCountTable != null) {
+            // print straight from the table without creating WordCounts
+            StringBuilder line = new StringBuilder();
+            for (int rank = 0; rank < wordCountTable.size(); rank++) {
+                line.setLength(0);
+                wordCountTable.appendWord(rank, line);
+                line.append(':').append(wordCountTable.getCount(rank));
+                System.out.println(line);
+            }
+        } else {
+            for (WordCount word : wordCountList) {
+                System.out.println(word.getWord() + ":" + word.getCount());
+            }
         }
     }
     
@@ -135,6 +710,9 @@ public class WordCounter {
      * Retrieves the wordCount list for the non-stop words
      */
     public List<WordCount> getWordCountList() {
+        if (wordCountList == null && wordCountTable != null) {
+            wordCountList = wordCountTable.toList();
+        }
         return wordCountList;
     }
     
@@ -142,9 +720,28 @@ public class WordCounter {
      * Retrieves the wordCount list for all the words
      */
     public List<WordCount> getAllWordCountList() {
+        if (allWordCountList == null && allWordCountTable != null) {
+            allWordCountList = allWordCountTable.toList();
+        }
         return allWordCountList;
     }
     
+    /**
+     * Retrieves the ranked table of the non-stop words, or null if
+     * loadAndProcess() has not been called
+     */
+    public WordCountTable getWordCountTable() {
+        return wordCountTable;
+    }
+    
+    /**
+     * Retrieves the ranked table of all the words, or null if
+     * loadAndProcess() has not been called
+     */
+    public WordCountTable getAllWordCountTable() {
+        return allWordCountTable;
+    }
+    
     /**
      * Write the given content to a file with the given name
      */
@@ -166,12 +763,113 @@ public class WordCounter {
         toFile.close();
     }
     
+    /**
+     * Separates the options of the form --name or --name=value from the 
+     * other command line arguments
+     * @param args the command line arguments
+     * @param options the map to put the options in; an option without a 
+     *        value is mapped to the empty string
+     * @return the arguments that are not options, in order
+     */
+    static String[] parseOptions(String[] args, Map<String, String> options) {
+        List<String> arguments = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int equals = arg.indexOf('=');
+                if (equals < 0) {
+                    options.put(arg.substring(2), "");
+                } else {
+                    options.put(arg.substring(2, equals), arg.substring(equals + 1));
+                }
+            } else {
+                arguments.add(arg);
+            }
+        }
+        return arguments.toArray(new String[arguments.size()]);
+    }
+    
+    /**
+     * Parses a size such as 512, 64k, 100m or 2g into a number of bytes
+     */
+    static long parseSize(String size) {
+        String lower = size.trim().toLowerCase();
+        long multiplier = 1;
+        if (lower.endsWith("k")) {
+            multiplier = 1L << 10;
+        } else if (lower.endsWith("m")) {
+            multiplier = 1L << 20;
+        } else if (lower.endsWith("g")) {
+            multiplier = 1L << 30;
+        }
+        if (multiplier > 1) {
+            lower = lower.substring(0, lower.length() - 1);
+        }
+        return Long.parseLong(lower) * multiplier;
+    }
+    
+    /**
+     * Parses a duration such as 500ms, 30s, 10m or 2h into milliseconds;
+     * a number without a unit is in milliseconds
+     */
+    static long parseDuration(String duration) {
+        String lower = duration.trim().toLowerCase();
+        long multiplier = 1;
+        if (lower.endsWith("ms")) {
+            lower = lower.substring(0, lower.length() - 2);
+        } else if (lower.endsWith("s")) {
+            multiplier = 1000;
+        } else if (lower.endsWith("m")) {
+            multiplier = 60 * 1000;
+        } else if (lower.endsWith("h")) {
+            multiplier = 60 * 60 * 1000;
+        }
+        if (multiplier > 1) {
+            lower = lower.substring(0, lower.length() - 1);
+        }
+        return Long.parseLong(lower) * multiplier;
+    }
+    
     /**
      * Reads from command line the name of the file with the words to be counted
      * and how the user want the word count map to be displayed
      * Displays the word count map as user required
+     * With --stats, prints the time spent in each phase and the counters of
+     * the run to standard error afterwards; --stats=json prints them as JSON.
+     * With --jmx, the word count maps are registered as MBeans, which is
+     * most useful for the long-running window and follow commands.
+     * --backend=hash counts the words in a WordCountHashMap instead of the
+     * default WordCountMap trie (--backend=trie).
+     * --ngram=2 or --ngram=3 counts and shows phrases of 2 or 3 words 
+     * instead of single words (see NGramCounter).
+     * "tfidf <directory> <numWords> <outputDir>" reads every file in the
+     * directory as one document of a corpus, in --threads threads, and
+     * writes a cloud of the top TF-IDF words of each document to
+     * <outputDir>/<document>.html (see TfIdfCorpus); with --subset=a.txt,b.txt
+     * it writes one cloud of those documents together to <outputDir>/subset.html.
+     * With --deadline=<time, e.g. 500ms>, cloud counts only as much of the
+     * input as fits in the time and reports the fraction covered; with
+     * --sample the part counted is a uniform sample of chunks of the input
+     * (seeded by --seed) instead of its beginning.
+     * With --approx[=sketchBytes], cloud counts the words approximately in
+     * fixed memory (see ApproximateWordCounter); --sketch-depth and
+     * --heavy-hitters set the sketch rows and the number of tracked words.
+     * With --memory-budget=<bytes, e.g. 256m>, the words are counted exactly
+     * but the counts are written to run files in --spill-dir whenever the
+     * trie grows over the budget (see ExternalWordCounter).
+     * "window <inputFile or -> <numWords> <outputFile>" reads a continuous
+     * stream (standard input for -) and keeps rewriting the cloud of the last
+     * --window-tokens tokens and/or the last --window-time (e.g. 10m), every
+     * --render-every tokens and/or every --render-interval (e.g. 5s).
+     * "follow <inputFile> <numWords> <outputFile>" follows a growing file
+     * such as a log, reading only what is appended (see FileFollower). Its
+     * position and counts are saved to --checkpoint (default the output file
+     * name plus .checkpoint) every --checkpoint-interval (default 10s), and
+     * resumed from on restart; --once stops after the first read.
      */
     public static void main(String[] args) {
+        Map<String, String> options = new HashMap<String, String>();
+        args = parseOptions(args, options);
+        PipelineStats stats = PipelineStats.create(options.containsKey("stats"));
         
         if (args.length < 2) {
             System.out.println("Need more command line arguments!");
@@ -181,11 +879,133 @@ public class WordCounter {
                 // displays the word and its count with text
                 if (args[0].equals("byCount")) {
                     WordCounter counter = new WordCounter();
+                    counter.setStats(stats);
+                    counter.setRegisterMBeans(options.containsKey("jmx"));
+                    if (options.containsKey("backend")) {
+                        counter.setBackend(options.get("backend"));
+                    }
+                    
+                    if (options.containsKey("ngram")) {
+                        NGramCounter nGramCounter = new NGramCounter(Integer.parseInt(options.get("ngram")));
+                        counter.loadNGrams(filepath, nGramCounter);
+                        counter.startPhase("sort");
+                        List<WordCount> phrases = nGramCounter.getWordCountsByCount();
+                        counter.startPhase("display");
+                        for (WordCount phrase : phrases) {
+                            System.out.println(phrase.getWord() + ":" + phrase.getCount());
+                        }
+                        finishStats(stats, options);
+                        return;
+                    }
+                    
+                    if (options.containsKey("memory-budget")) {
+                        ExternalWordCounter externalCounter = externalCounter(options);
+                        try {
+                            counter.loadExternal(filepath, externalCounter, false);
+                            counter.startPhase("sort");
+                            int numWords = externalCounter.printWordCountsByCount(System.out);
+                            if (stats != null) {
+                                stats.distinctWords = numWords;
+                            }
+                        } catch (IOException e) {
+                            System.out.println("Could not count the words on disk: " + e.getMessage());
+                        } finally {
+                            externalCounter.close();
+                        }
+                        finishStats(stats, options);
+                        return;
+                    }
             
-                    counter.load(filepath);
-                    counter.processData();
+                    counter.loadAndProcess(filepath);
                     counter.display();
                 }
+            } else if (args[0].equals("follow") && args.length == 4) {
+                // displays the words of a growing file with a word cloud
+                // that is updated as the file grows
+                WordCounter counter = new WordCounter();
+                counter.setStats(stats);
+                counter.setRegisterMBeans(options.containsKey("jmx"));
+                String checkpoint = args[3] + ".checkpoint";
+                if (options.containsKey("checkpoint")) {
+                    checkpoint = options.get("checkpoint");
+                }
+                long checkpointInterval = 10000;
+                if (options.containsKey("checkpoint-interval")) {
+                    checkpointInterval = parseDuration(options.get("checkpoint-interval"));
+                }
+                long pollInterval = 1000;
+                if (options.containsKey("poll-interval")) {
+                    pollInterval = parseDuration(options.get("poll-interval"));
+                }
+                counter.startPhase("follow");
+                try {
+                    counter.follow(args[1], Integer.parseInt(args[2]), args[3], new File(checkpoint),
+                                   checkpointInterval, pollInterval, options.containsKey("once"));
+                } catch (IOException e) {
+                    System.out.println("Could not follow " + args[1] + ": " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (args[0].equals("tfidf") && args.length == 4) {
+                // displays the words that set documents apart from the 
+                // rest of a corpus with word clouds
+                WordCounter counter = new WordCounter();
+                counter.setStats(stats);
+                int threads = Runtime.getRuntime().availableProcessors();
+                if (options.containsKey("threads")) {
+                    threads = Integer.parseInt(options.get("threads"));
+                }
+                try {
+                    counter.processCorpus(new File(args[1]), Integer.parseInt(args[2]), new File(args[3]), 
+                                          options.get("subset"), threads);
+                } catch (FileNotFoundException e) {
+                    System.out.println("File cannot be found! " + e.getMessage());
+                }
+            } else if (args[0].equals("window") && args.length == 4) {
+                // displays the words of a sliding window over a stream 
+                // with a word cloud that is updated as the stream goes on
+                WordCounter counter = new WordCounter();
+                counter.setStats(stats);
+                counter.setRegisterMBeans(options.containsKey("jmx"));
+                int numWordsToInclude = Integer.parseInt(args[2]);
+                int windowTokens = 0;
+                long windowTime = 0;
+                if (options.containsKey("window-tokens")) {
+                    windowTokens = Integer.parseInt(options.get("window-tokens"));
+                }
+                if (options.containsKey("window-time")) {
+                    windowTime = parseDuration(options.get("window-time"));
+                }
+                if (windowTokens == 0 && windowTime == 0) {
+                    windowTokens = 100000;
+                }
+                int renderEvery = 0;
+                long renderInterval = 0;
+                if (options.containsKey("render-every")) {
+                    renderEvery = Integer.parseInt(options.get("render-every"));
+                }
+                if (options.containsKey("render-interval")) {
+                    renderInterval = parseDuration(options.get("render-interval"));
+                }
+                if (renderEvery == 0 && renderInterval == 0) {
+                    renderInterval = 5000;
+                }
+                
+                Scanner scanner = null;
+                if (args[1].equals("-")) {
+                    scanner = new Scanner(System.in);
+                } else {
+                    try {
+                        scanner = new Scanner(new File(args[1]));
+                    } catch (FileNotFoundException e) {
+                        System.out.println("File cannot be found!");
+                        return;
+                    }
+                }
+                counter.startPhase("window");
+                counter.processWindow(scanner, new SlidingWindowCounter(windowTokens, windowTime), 
+                                      numWordsToInclude, args[1], args[3], renderEvery, renderInterval);
+                scanner.close();
             } else {
                 // displays the word with a word cloud
                 if (args[0].equals("cloud")) {
@@ -200,25 +1020,145 @@ public class WordCounter {
                     String outputfileName = args[3];
 
                     WordCounter counter = new WordCounter();
+                    counter.setStats(stats);
+                    counter.setRegisterMBeans(options.containsKey("jmx"));
+                    if (options.containsKey("backend")) {
+                        counter.setBackend(options.get("backend"));
+                    }
+                    
+                    if (options.containsKey("approx")) {
+                        // count in fixed memory and only keep the top words
+                        ApproximateWordCounter approximateCounter = approximateCounter(options, numWordsToInclude);
+                        counter.loadApproximate(inputfileName, approximateCounter);
+                        counter.startPhase("sort");
+                        List<WordCount> topWords = approximateCounter.getWordCountsByCount(numWordsToInclude);
+                        counter.startPhase("render");
+                        String html = WordCloudMaker.getWordCloudHTML(inputfileName, topWords);
+                        counter.startPhase("write");
+                        counter.writeToFile(html, outputfileName);
+                        System.out.println("Approximate counts may be high by up to " 
+                                           + (long) Math.ceil(approximateCounter.errorBound()));
+                        finishStats(stats, options);
+                        return;
+                    }
 
-                    counter.load(inputfileName);
-                    counter.processData();
+                    if (options.containsKey("deadline")) {
+                        long seed = 42;
+                        if (options.containsKey("seed")) {
+                            seed = Long.parseLong(options.get("seed"));
+                        }
+                        try {
+                            counter.processWithDeadline(inputfileName, numWordsToInclude, outputfileName,
+                                                        parseDuration(options.get("deadline")),
+                                                        options.containsKey("sample"), seed);
+                        } catch (IOException e) {
+                            System.out.println("Could not read " + inputfileName + ": " + e.getMessage());
+                        }
+                        finishStats(stats, options);
+                        return;
+                    }
                     
-                    int wordcountSize = counter.getWordCountList().size();
-                    String html = "";
+                    if (options.containsKey("ngram")) {
+                        // only the top phrases are turned back into text
+                        NGramCounter nGramCounter = new NGramCounter(Integer.parseInt(options.get("ngram")));
+                        counter.loadNGrams(inputfileName, nGramCounter);
+                        counter.startPhase("sort");
+                        List<WordCount> topPhrases = nGramCounter.getWordCountsByCount(numWordsToInclude);
+                        counter.startPhase("render");
+                        String html = WordCloudMaker.getWordCloudHTML(inputfileName, topPhrases);
+                        counter.startPhase("write");
+                        counter.writeToFile(html, outputfileName);
+                        finishStats(stats, options);
+                        return;
+                    }
                     
-                    // if the text file contains fewer non-stop words than the given
-                    // number to include, include all words in the word cloud
-                    if (numWordsToInclude > wordcountSize) {
-                        html = WordCloudMaker.getWordCloudHTML(inputfileName, counter.allWordCountList);
-                    } else {
-                        // otherwise, only include the top given number of non-stop words
-                        html = WordCloudMaker.getWordCloudHTML(inputfileName, counter.getWordCountList().subList(0, numWordsToInclude));
+                    if (options.containsKey("memory-budget")) {
+                        List<WordCount> topWords = null;
+                        ExternalWordCounter externalCounter = externalCounter(options);
+                        try {
+                            counter.loadExternal(inputfileName, externalCounter, false);
+                            counter.startPhase("sort");
+                            topWords = externalCounter.getWordCountsByCount(numWordsToInclude);
+                            if (topWords.size() < numWordsToInclude) {
+                                // too few non-stop words, so include all words
+                                externalCounter.close();
+                                externalCounter = externalCounter(options);
+                                counter.loadExternal(inputfileName, externalCounter, true);
+                                counter.startPhase("sort");
+                                topWords = externalCounter.getWordCountsByCount(Integer.MAX_VALUE);
+                            }
+                        } catch (IOException e) {
+                            System.out.println("Could not count the words on disk: " + e.getMessage());
+                            return;
+                        } finally {
+                            externalCounter.close();
+                        }
+                        counter.startPhase("render");
+                        String html = WordCloudMaker.getWordCloudHTML(inputfileName, topWords);
+                        counter.startPhase("write");
+                        counter.writeToFile(html, outputfileName);
+                        finishStats(stats, options);
+                        return;
                     }
 
+                    counter.loadCounts(inputfileName);
+                    // if the text file contains fewer non-stop words than the given
+                    // number to include, include all words in the word cloud;
+                    // otherwise, only include the top given number of non-stop words
+                    List<WordCount> cloudWords = counter.getCloudWords(numWordsToInclude);
+                    counter.startPhase("render");
+                    String html = WordCloudMaker.getWordCloudHTML(inputfileName, cloudWords);
+
+                    counter.startPhase("write");
                     counter.writeToFile(html, outputfileName);
                 }
             }
         }
+        
+        finishStats(stats, options);
+    }
+    
+    /**
+     * Creates the ApproximateWordCounter for --approx from the options
+     */
+    private static ApproximateWordCounter approximateCounter(Map<String, String> options, int numWordsToInclude) {
+        long sketchBytes = 8L << 20;
+        if (!options.get("approx").isEmpty()) {
+            sketchBytes = parseSize(options.get("approx"));
+        }
+        int sketchDepth = 4;
+        if (options.containsKey("sketch-depth")) {
+            sketchDepth = Integer.parseInt(options.get("sketch-depth"));
+        }
+        int heavyHitters = Math.max(10 * numWordsToInclude, 1000);
+        if (options.containsKey("heavy-hitters")) {
+            heavyHitters = Integer.parseInt(options.get("heavy-hitters"));
+        }
+        return new ApproximateWordCounter(sketchBytes, sketchDepth, heavyHitters);
+    }
+    
+    /**
+     * Creates the ExternalWordCounter for --memory-budget from the options
+     */
+    private static ExternalWordCounter externalCounter(Map<String, String> options) {
+        File directory = null;
+        if (options.containsKey("spill-dir")) {
+            directory = new File(options.get("spill-dir"));
+        }
+        return new ExternalWordCounter(parseSize(options.get("memory-budget")), directory);
+    }
+    
+    /**
+     * Ends the statistics of the run and prints them as --stats asks
+     */
+    private static void finishStats(PipelineStats stats, Map<String, String> options) {
+        if (stats != null) {
+            stats.finish();
+            if ("json".equals(options.get("stats"))) {
+                System.err.println(stats.toJson());
+            } else if (options.containsKey("stats")) {
+                System.err.print(stats.summary());
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+import benchmarks.Operations;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Implements the operations measured by the JMH benchmarks, which cannot
+ * name the classes of the default package themselves.
+ *
+ * @author: Yitong Chen
+ */
+public class JmhOperations implements Operations {
+    public String[] tokens(int vocabularySize, String lengthDistribution, int numTokens, long seed) {
+        return CorpusGenerator.words(vocabularySize, lengthDistribution, numTokens, seed);
+    }
+
+    public String[] punctuatedTokens(int vocabularySize, String lengthDistribution, int numTokens, long seed) {
+        return CorpusGenerator.punctuatedTokens(vocabularySize, lengthDistribution, numTokens, seed);
+    }
+
+    public Object newStore(String backend) {
+        if (backend.equals("WordCountHashMap")) {
+            return new WordCountHashMap();
+        }
+        return new WordCountMap();
+    }
+
+    public void incrementCount(Object store, String word) {
+        ((WordCountStore) store).incrementCount(word);
+    }
+
+    public int getCount(Object store, String word) {
+        return ((WordCountStore) store).getCount(word);
+    }
+
+    public void decrementCount(Object store, String word) {
+        ((WordCountStore) store).decrementCount(word);
+    }
+
+    public int getWordCountsByCount(Object store) {
+        return ((WordCountStore) store).getWordCountsByCount().size();
+    }
+
+    public long getEstimatedBytes(Object store) {
+        return ((WordCountStore) store).getEstimatedBytes();
+    }
+
+    public String format(String token) {
+        return WordCounter.format(token);
+    }
+
+    public Object[] wordCounts(String[] tokens) {
+        WordCountMap map = new WordCountMap();
+        for (String token : tokens) {
+            map.incrementCount(token);
+        }
+        List<WordCount> list = map.getWordCountsByCount();
+        return list.toArray(new WordCount[list.size()]);
+    }
+
+    public void quicksort(Object[] wordCounts) {
+        Quicksort.quicksort((WordCount[]) wordCounts);
+    }
+
+    public String getWordCloudHTML(String title, Object[] wordCounts) {
+        return WordCloudMaker.getWordCloudHTML(title, Arrays.asList((WordCount[]) wordCounts));
+    }
+}
@@ -0,0 +1,57 @@
+package benchmarks;
+
+/**
+ * The operations of the word counter that the JMH benchmarks measure.
+ *
+ * JMH only accepts benchmark classes in a package, and a class in a package
+ * cannot name the word counter classes, which are in the default package.
+ * So the benchmarks call them through this interface, which is implemented
+ * by JmhOperations in the default package and loaded by name once. The
+ * word counter objects are passed around as Object.
+ *
+ * @author: Yitong Chen
+ */
+public interface Operations {
+    /** Returns CorpusGenerator.words, the words of a seeded Zipf stream */
+    String[] tokens(int vocabularySize, String lengthDistribution, int numTokens, long seed);
+
+    /** Returns CorpusGenerator.punctuatedTokens, the same with punctuation */
+    String[] punctuatedTokens(int vocabularySize, String lengthDistribution, int numTokens, long seed);
+
+    /** Returns an empty WordCountStore of the named class */
+    Object newStore(String backend);
+
+    void incrementCount(Object store, String word);
+
+    int getCount(Object store, String word);
+
+    void decrementCount(Object store, String word);
+
+    /** Returns the size of store.getWordCountsByCount() */
+    int getWordCountsByCount(Object store);
+
+    /** Returns store.getEstimatedBytes() */
+    long getEstimatedBytes(Object store);
+
+    String format(String token);
+
+    /** Returns the WordCount array of the tokens, ranked by count */
+    Object[] wordCounts(String[] tokens);
+
+    /** Sorts a WordCount array returned by wordCounts with Quicksort.quicksort */
+    void quicksort(Object[] wordCounts);
+
+    /** Returns the cloud of a WordCount array returned by wordCounts */
+    String getWordCloudHTML(String title, Object[] wordCounts);
+
+    /**
+     * Returns the JmhOperations of the default package
+     */
+    static Operations load() {
+        try {
+            return (Operations) Class.forName("JmhOperations").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("JmhOperations is not on the class path", e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package benchmarks;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks of the rest of the pipeline: WordCounter.format on
+ * punctuated tokens, Quicksort.quicksort on the shuffled word counts, and
+ * WordCloudMaker.getWordCloudHTML on the top words, for each vocabulary
+ * size and word-length distribution.
+ *
+ * @author: Yitong Chen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PipelineBenchmarks {
+    static final int NUM_TOKENS = 200000;
+    // the number of words in the benchmarked word cloud
+    static final int CLOUD_WORDS = 200;
+    private static final Operations OPERATIONS = Operations.load();
+
+    @Param({"1000", "100000"})
+    public int vocabularySize;
+
+    @Param({"short", "english", "long"})
+    public String lengthDistribution;
+
+    private String[] punctuated;
+    // the word counts of the stream in a fixed shuffled order
+    private Object[] shuffled;
+    private Object[] topWords;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        punctuated = OPERATIONS.punctuatedTokens(vocabularySize, lengthDistribution, NUM_TOKENS, 42);
+        Object[] ranked = OPERATIONS.wordCounts(OPERATIONS.tokens(vocabularySize, lengthDistribution,
+                                                                  NUM_TOKENS, 42));
+        topWords = Arrays.copyOf(ranked, Math.min(CLOUD_WORDS, ranked.length));
+        shuffled = ranked.clone();
+        Collections.shuffle(Arrays.asList(shuffled), new Random(11));
+    }
+
+    /**
+     * A copy of the shuffled word counts, made again before each sort
+     */
+    @State(Scope.Thread)
+    public static class UnsortedCopy {
+        Object[] array;
+
+        @Setup(Level.Invocation)
+        public void copy(PipelineBenchmarks benchmarks) {
+            array = benchmarks.shuffled.clone();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_TOKENS)
+    public void format(Blackhole blackhole) {
+        for (String token : punctuated) {
+            blackhole.consume(OPERATIONS.format(token));
+        }
+    }
+
+    @Benchmark
+    public Object[] quicksort(UnsortedCopy copy) {
+        OPERATIONS.quicksort(copy.array);
+        return copy.array;
+    }
+
+    @Benchmark
+    public String getWordCloudHTML() {
+        return OPERATIONS.getWordCloudHTML("benchmark", topWords);
+    }
+}
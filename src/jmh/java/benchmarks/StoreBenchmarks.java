@@ -0,0 +1,160 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks of the operations of both WordCountStore backends (the
+ * WordCountMap trie and the WordCountHashMap) on a seeded Zipf token
+ * stream, for each vocabulary size and word-length distribution. The
+ * per-token operations report the time per token. decrementCount and
+ * getWordCountsByCount get a newly filled store before each call, which
+ * the GC profiler counts in their bytes per operation. retained reports
+ * the estimated heap held by a filled store as its retainedBytes counter.
+ *
+ * @author: Yitong Chen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StoreBenchmarks {
+    static final int NUM_TOKENS = 200000;
+    private static final Operations OPERATIONS = Operations.load();
+
+    @Param({"WordCountMap", "WordCountHashMap"})
+    public String backend;
+
+    @Param({"1000", "100000"})
+    public int vocabularySize;
+
+    @Param({"short", "english", "long"})
+    public String lengthDistribution;
+
+    // the words of the token stream, in stream order
+    private String[] tokens;
+    // a store holding the tokens, which getCount does not change
+    private Object filledStore;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        tokens = OPERATIONS.tokens(vocabularySize, lengthDistribution, NUM_TOKENS, 42);
+        filledStore = fill();
+    }
+
+    /**
+     * Returns a new store of the backend holding the tokens
+     */
+    Object fill() {
+        Object store = OPERATIONS.newStore(backend);
+        for (String token : tokens) {
+            OPERATIONS.incrementCount(store, token);
+        }
+        return store;
+    }
+
+    /**
+     * A store holding the tokens, filled again before each call of the
+     * benchmarks that change it or cache their result
+     */
+    @State(Scope.Thread)
+    public static class FreshStore {
+        Object store;
+
+        @Setup(Level.Invocation)
+        public void fill(StoreBenchmarks benchmarks) {
+            store = benchmarks.fill();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_TOKENS)
+    public Object incrementCount() {
+        return fill();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_TOKENS)
+    public void getCount(Blackhole blackhole) {
+        for (String token : tokens) {
+            blackhole.consume(OPERATIONS.getCount(filledStore, token));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_TOKENS)
+    public Object decrementCount(FreshStore fresh) {
+        for (String token : tokens) {
+            OPERATIONS.decrementCount(fresh.store, token);
+        }
+        return fresh.store;
+    }
+
+    @Benchmark
+    public int getWordCountsByCount(FreshStore fresh) {
+        return OPERATIONS.getWordCountsByCount(fresh.store);
+    }
+
+    /**
+     * A store holding the tokens that getWordCountsByCountPatched keeps
+     * counting more tokens in, filled and ranked once
+     */
+    @State(Scope.Thread)
+    public static class ChangingStore {
+        Object store;
+        // the index of the next token to count
+        int next;
+
+        @Setup(Level.Trial)
+        public void fill(StoreBenchmarks benchmarks) {
+            store = benchmarks.fill();
+            OPERATIONS.getWordCountsByCount(store);
+            next = 0;
+        }
+    }
+
+    /**
+     * Counts a few tokens between rankings, as follow mode does, so the
+     * trie patches its cached ranking instead of ranking every word again
+     */
+    @Benchmark
+    public int getWordCountsByCountPatched(ChangingStore changing) {
+        for (int i = 0; i < 16; i++) {
+            OPERATIONS.incrementCount(changing.store, tokens[changing.next]);
+            changing.next = (changing.next + 1) % tokens.length;
+        }
+        return OPERATIONS.getWordCountsByCount(changing.store);
+    }
+
+    /**
+     * The estimated heap retained by the filled store, reported next to
+     * the time of the retained benchmark
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+        public long retainedBytes;
+    }
+
+    @Benchmark
+    public long retained(Retained retained) {
+        retained.retainedBytes = OPERATIONS.getEstimatedBytes(filledStore);
+        return retained.retainedBytes;
+    }
+}